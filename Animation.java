@@ -0,0 +1,160 @@
+/**
+ * Animation.java
+ * The animation clips of one character (the player, an enemy type, the boss), read from its text file
+ * in Resources/Animations instead of being written out as picture arrays in each class
+ * Every frame's size, where it is drawn, its hitbox and its attack box are worked out once when the
+ * file is read, so animating and colliding never has to ask a picture for its size
+ * A character's clips are shared by everyone using them, and their pictures are released once the
+ * last one lets go (see AssetManager)
+ */
+
+/* Animation file format
+ * ---------------------
+ * # comment
+ * clip <name> <ticks each frame is shown for>
+ * ---- <picture> <draw x> <draw y> <hitbox x> <hitbox y> <hitbox width> <hitbox height>
+ *      [<attack x> <attack y> <attack width> <attack height>]       (one line per frame)
+ * Positions are relative to the character's own x,y; the draw offset is where the picture's top left goes
+ * Clips facing a direction are named <name>-up, -right, -down or -left (see directional)
+ */
+
+import java.awt.Image;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Scanner;
+
+class Animation {
+    public static final String FOLDER = "Resources/Animations";
+    public static final String[] DIRECTIONS = {"up", "right", "down", "left"};   //same order as UP, RIGHT, DOWN, LEFT
+
+    //one picture of a clip and everything about it that is needed each tick
+    public static class Frame {
+        public final Image image;
+        public final int width, height;
+        public final int drawX, drawY;
+        public final int hitX, hitY, hitWidth, hitHeight;
+        public final int attackX, attackY, attackWidth, attackHeight;     //all 0 for frames that don't attack
+        public final SpriteMask mask;           //solid pixels of the picture (null unless hits are pixel-exact)
+
+        private Frame(Image image, int[] numbers) {
+            this.image = image;
+            width = image.getWidth(null);
+            height = image.getHeight(null);
+            drawX = numbers[0];
+            drawY = numbers[1];
+            hitX = numbers[2];
+            hitY = numbers[3];
+            hitWidth = numbers[4];
+            hitHeight = numbers[5];
+            attackX = numbers[6];
+            attackY = numbers[7];
+            attackWidth = numbers[8];
+            attackHeight = numbers[9];
+            mask = SpriteMask.of(image);
+        }
+    }
+
+    public static class Clip {
+        public final String name;
+        public final Frame[] frames;
+        public final int ticks;                 //ticks each frame is shown for
+
+        private Clip(String name, Frame[] frames, int ticks) {
+            this.name = name;
+            this.frames = frames;
+            this.ticks = ticks;
+        }
+    }
+
+    private static HashMap<String, Animation> loaded = new HashMap<String, Animation>();
+
+    private String character;
+    private HashMap<String, Clip> clips;
+    private ArrayList<Image> pictures;          //every picture acquired for the clips
+    private int users;
+
+    private Animation(String character) {
+        this.character = character;
+        clips = new HashMap<String, Clip>();
+        pictures = new ArrayList<Image>();
+    }
+
+    //the clips of a character (e.g. "Link" for Resources/Animations/Link.txt), loaded the first time
+    public static synchronized Animation acquire(String character) {
+        Animation animation = loaded.get(character);
+        if (animation == null) {
+            animation = new Animation(character);
+            animation.load(new File(FOLDER, character + ".txt"));
+            loaded.put(character, animation);
+        }
+        animation.users++;
+        return animation;
+    }
+
+    //stops using a character's clips, their pictures are released after the last user
+    public static synchronized void release(Animation animation) {
+        animation.users--;
+        if (animation.users == 0) {
+            loaded.remove(animation.character);
+            for (Image img : animation.pictures) {
+                AssetManager.release(img);
+            }
+        }
+    }
+
+    public Clip getClip(String name) {return clips.get(name);}
+    public ArrayList<Image> getPictures() {return pictures;}
+
+    //the clip to show when facing each direction: <name>-<direction> if there is one, otherwise <name>,
+    // otherwise null (the character keeps its last clip when turning that way)
+    public Clip[] directional(String name) {
+        Clip[] facing = new Clip[DIRECTIONS.length];
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            facing[d] = clips.containsKey(name + "-" + DIRECTIONS[d]) ? clips.get(name + "-" + DIRECTIONS[d]) : clips.get(name);
+        }
+        return facing;
+    }
+
+    @SuppressWarnings("try")
+    private void load(File file) {
+        try (Profiler.Phase phase = Profiler.begin("animation", character)) {
+            Scanner inFile = new Scanner(file);
+            String clipName = null;
+            int ticks = 1;
+            ArrayList<Frame> frames = new ArrayList<Frame>();
+            while (inFile.hasNextLine()) {
+                String line = inFile.nextLine().trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts[0].equals("clip")) {
+                    if (clipName != null) {
+                        clips.put(clipName, new Clip(clipName, frames.toArray(new Frame[0]), ticks));
+                    }
+                    clipName = parts[1];
+                    ticks = Integer.parseInt(parts[2]);
+                    frames.clear();
+                }
+                else {
+                    int[] numbers = new int[10];
+                    for (int i = 1; i < parts.length; i++) {
+                        numbers[i-1] = Integer.parseInt(parts[i]);
+                    }
+                    Image img = AssetManager.acquire(parts[0]);
+                    pictures.add(img);
+                    frames.add(new Frame(img, numbers));
+                }
+            }
+            if (clipName != null) {
+                clips.put(clipName, new Clip(clipName, frames.toArray(new Frame[0]), ticks));
+            }
+            inFile.close();
+        }
+        catch (IOException | RuntimeException e) {
+            System.out.println("Couldn't load the animations of " + character + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Animator.java
+ * Plays an animation clip for one character: which frame it is on and how long until the next one
+ * Switching clips (turning around, the boss opening its mouth) keeps the frame number, so a character's
+ * walk cycle carries on in the new direction like it did with the old picture arrays
+ */
+
+class Animator {
+    private Animation.Clip clip;
+    private int frame;                  //current frame
+    private int wait;                   //animation delay counter (decrements every tick, when 0, animation progresses to next frame)
+
+    public Animator(Animation.Clip clip) {
+        this.clip = clip;
+        wait = clip.ticks - 1;
+    }
+
+    public Animation.Clip getClip() {return clip;}
+    public int getIndex() {return frame;}
+    public Animation.Frame getFrame() {return clip.frames[frame];}
+
+    //shows another clip from the same frame on (null keeps the current one)
+    public void setClip(Animation.Clip newClip) {
+        if (newClip != null) {
+            clip = newClip;
+            frame %= clip.frames.length;
+        }
+    }
+
+    //counts down one tick; returns true when it moved on to the next frame
+    public boolean tick() {
+        if (wait == 0) {
+            frame = (frame + 1) % clip.frames.length;
+            wait = clip.ticks - 1;
+            return true;
+        }
+        wait--;
+        return false;
+    }
+}
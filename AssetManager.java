@@ -0,0 +1,188 @@
+/**
+ * AssetManager.java
+ * Hands out one shared copy of every picture the game uses, instead of each enemy, room or item
+ * loading (and scaling) its own
+ * Pictures are looked up by path and the size they are wanted at; the first request loads the
+ * picture (from the sprite atlas when it is packed) and every later one gets the same image back
+ * Each picture counts how many things are using it and is dropped once the last one releases it; whatever
+ * keeps its own data per picture (palette variants, pixel masks) is told then so it can drop that too
+ * Sprites and tiles are kept as small palette pictures (see IndexedImages); sprites with too many colours
+ * for that are converted to the screen's own pixel format once instead
+ * Only looking pictures up is done while AssetManager is locked; each one is read and scaled outside
+ * of it, so rooms baking on several threads load their pictures at the same time
+ */
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+class AssetManager {
+    //told about every picture as it is dropped, and every variant made from it (while AssetManager is locked,
+    // so it mustn't acquire or release)
+    public interface ReleaseListener {
+        void released(Image img);
+    }
+
+    private static class Asset {
+        String key;
+        FutureTask<Image> loading;      //loads the picture once, on whichever thread wants it first
+        int users;                      //things holding on to the picture right now
+        long bytes;                     //memory taken up by its pixels
+    }
+
+    private static HashMap<String, Asset> assets = new HashMap<String, Asset>();
+    private static IdentityHashMap<Image, Asset> byImage = new IdentityHashMap<Image, Asset>();
+    private static int hits, misses;
+    private static long bytes;                  //memory taken up by every picture loaded right now
+    private static ArrayList<ReleaseListener> listeners = new ArrayList<ReleaseListener>();
+    private static volatile int drops;          //pictures dropped so far
+
+    public static synchronized int getHits() {return hits;}
+    public static synchronized int getMisses() {return misses;}
+    public static synchronized long getBytes() {return bytes;}
+    public static synchronized int getLoaded() {return assets.size();}
+    public static int getDrops() {return drops;}
+
+    public static synchronized void addReleaseListener(ReleaseListener listener) {
+        listeners.add(listener);
+    }
+
+    //tells the listeners a picture made from a dropped one (a palette variant) is gone as well
+    public static synchronized void dropped(Image img) {
+        for (ReleaseListener listener : listeners) {
+            listener.released(img);
+        }
+    }
+
+    //forgets the loaded copies of a picture whose file has changed, so the next acquire reads it again;
+    // whatever holds an old copy keeps using it until it releases it
+    public static synchronized void changed(String path) {
+        String prefix = SpriteAtlas.key(path) + "@";
+        assets.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    //a sprite at its own size
+    public static Image acquire(String path) {
+        return acquire(path, 0, 0, false);
+    }
+
+    //a tile or door scaled to width by height (0 keeps its own size)
+    public static Image acquireTile(String path, int width, int height) {
+        return acquire(path, width, height, true);
+    }
+
+    //stops using a picture handed out by acquire or acquireTile
+    public static synchronized void release(Image img) {
+        Asset asset = byImage.get(img);
+        if (asset == null) {
+            return;
+        }
+        asset.users--;
+        if (asset.users == 0) {
+            //(a picture whose file changed may already have a newer copy under the same key)
+            assets.remove(asset.key, asset);
+            byImage.remove(img);
+            bytes -= asset.bytes;
+            drops++;
+            dropped(img);
+        }
+    }
+
+    private static Image acquire(String path, int width, int height, boolean tile) {
+        String key = SpriteAtlas.key(path) + "@" + width + "x" + height + (tile ? ":tile" : "");
+        Asset asset;
+        synchronized (AssetManager.class) {
+            asset = assets.get(key);
+            if (asset != null) {
+                hits++;
+                asset.users++;
+            }
+            else {
+                misses++;
+                Asset added = new Asset();
+                added.key = key;
+                added.users = 1;
+                added.loading = new FutureTask<Image>(() -> load(added, path, width, height, tile));
+                assets.put(key, added);
+                asset = added;
+            }
+        }
+
+        //if another thread is in the middle of loading the picture, this waits for that thread instead of loading it twice
+        asset.loading.run();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return asset.loading.get();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Couldn't load " + path, e.getCause());
+        }
+        finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    //reads (and scales) a picture for an asset, without AssetManager locked
+    @SuppressWarnings("try")
+    private static Image load(Asset asset, String path, int width, int height, boolean tile) {
+        Image image;
+        try (Profiler.Phase phase = Profiler.begin("asset", asset.key)) {
+            BufferedImage img = SpriteAtlas.loadBuffImage(path);
+            if (width > 0 && height > 0 && (img.getWidth() != width || img.getHeight() != height)) {
+                try (Profiler.Phase scale = Profiler.begin("scale", path)) {
+                    img = IndexedImages.toBuffered(img.getScaledInstance(width, height, Image.SCALE_SMOOTH), false);
+                }
+            }
+            //sprites are kept as palette pictures too when they can be, so colour variants can share their pixels
+            // (see PaletteSwap); the ones with too many colours are converted to the screen's format instead
+            BufferedImage indexed = IndexedImages.compact(img);
+            img = tile || indexed != img ? indexed : compatible(img);
+            image = img;
+            asset.bytes = IndexedImages.footprint(img);
+        }
+        catch (IOException | RuntimeException e) {
+            //missing pictures are left to ImageIcon, which just draws nothing, like before
+            System.out.println("Couldn't load " + path + ": " + e);
+            image = SpriteAtlas.loadImage(path);
+        }
+        synchronized (AssetManager.class) {
+            byImage.put(image, asset);
+            bytes += asset.bytes;
+        }
+        return image;
+    }
+
+    //the picture in the screen's pixel format (left as it is without a screen, or if it already matches)
+    private static BufferedImage compatible(BufferedImage img) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return img;
+        }
+        GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        if (img.getColorModel().equals(gc.getColorModel(img.getTransparency()))) {
+            return img;
+        }
+        BufferedImage copy = gc.createCompatibleImage(img.getWidth(), img.getHeight(), img.getTransparency());
+        Graphics g = copy.getGraphics();
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return copy;
+    }
+
+    public static synchronized void report() {
+        System.out.printf("Assets: %d pictures loaded (%.1f KB), %d hits, %d misses%n", assets.size(), bytes/1024.0, hits, misses);
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * AtlasPacker.java
+ * Build step that packs the small sprite and tile pictures into a few big atlas pictures,
+ * plus an index (atlas.txt) of where each picture ended up, which SpriteAtlas then reads at runtime
+ * Re-run it whenever a picture in one of the packed folders is added or changed (until then, changed
+ * pictures are read from their own files, see SpriteAtlas):
+ *   java AtlasPacker [output folder] [folders to pack...]
+ * Pictures are packed in shelves (rows), tallest first, onto pages of at most PAGE_SIZE square
+ */
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+
+class AtlasPacker {
+    public static final String[] DEFAULT_FOLDERS = {"Resources/Link", "Resources/Enemies", "Resources/Boss",
+                                                    "Resources/Dungeon/DungeonTileSet", "Resources/Dungeon/DoorPics",
+                                                    "Resources/OverWorld/OWTileSet"};
+    public static final int PAGE_SIZE = 1024;
+    public static final int GAP = 1;            //empty pixels between pictures, so scaling one never picks up its neighbour
+
+    private ArrayList<String> names;
+    private ArrayList<BufferedImage> pictures;
+    private ArrayList<String> sources;          //size, time and checksum of each picture's file
+
+    public AtlasPacker() {
+        names = new ArrayList<String>();
+        pictures = new ArrayList<BufferedImage>();
+        sources = new ArrayList<String>();
+    }
+
+    //adds every png in the folder (and the folders in it)
+    public void addFolder(File folder) throws IOException {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            System.out.println("Skipping missing folder " + folder);
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addFolder(file);
+            }
+            else if (file.getName().toLowerCase().endsWith(".png")) {
+                BufferedImage picture = ImageIO.read(file);
+                if (picture.getWidth() > PAGE_SIZE || picture.getHeight() > PAGE_SIZE) {
+                    System.out.println("Skipping " + file + ", too big for a page");
+                    continue;
+                }
+                names.add(SpriteAtlas.key(file.getPath()));
+                pictures.add(picture);
+                sources.add(file.length() + " " + file.lastModified() + " " + SpriteAtlas.checksum(file));
+            }
+        }
+    }
+
+    //lays out the pictures and writes the pages and the index into the folder
+    public void write(File output) throws IOException {
+        output.mkdirs();
+
+        //packs the tallest pictures first so each shelf wastes as little height as possible
+        Integer[] byHeight = new Integer[pictures.size()];
+        for (int i = 0; i < byHeight.length; i++) {
+            byHeight[i] = i;
+        }
+        Arrays.sort(byHeight, (a, b) -> pictures.get(b).getHeight() - pictures.get(a).getHeight());
+
+        int[] page = new int[pictures.size()], x = new int[pictures.size()], y = new int[pictures.size()];
+        int pages = 0, shelfX = 0, shelfY = 0, shelfHeight = 0;
+        int[] pageHeights = new int[pictures.size()+1];
+        for (int i : byHeight) {
+            BufferedImage picture = pictures.get(i);
+            if (shelfX + picture.getWidth() > PAGE_SIZE) {
+                shelfX = 0;
+                shelfY += shelfHeight + GAP;
+                shelfHeight = 0;
+            }
+            if (shelfY + picture.getHeight() > PAGE_SIZE) {
+                pages++;
+                shelfX = 0;
+                shelfY = 0;
+                shelfHeight = 0;
+            }
+            page[i] = pages;
+            x[i] = shelfX;
+            y[i] = shelfY;
+            shelfX += picture.getWidth() + GAP;
+            shelfHeight = Math.max(shelfHeight, picture.getHeight());
+            pageHeights[pages] = Math.max(pageHeights[pages], shelfY + picture.getHeight());
+        }
+
+        for (int p = 0; p <= pages; p++) {
+            BufferedImage atlas = new BufferedImage(PAGE_SIZE, pageHeights[p], BufferedImage.TYPE_INT_ARGB);
+            Graphics g = atlas.getGraphics();
+            for (int i = 0; i < pictures.size(); i++) {
+                if (page[i] == p) {
+                    g.drawImage(pictures.get(i), x[i], y[i], null);
+                }
+            }
+            g.dispose();
+            ImageIO.write(atlas, "png", new File(output, "atlas" + p + ".png"));
+        }
+
+        PrintWriter index = new PrintWriter(new FileWriter(new File(output, SpriteAtlas.INDEX_NAME)));
+        index.println(pages + 1);
+        for (int i = 0; i < pictures.size(); i++) {
+            index.println(names.get(i) + " " + page[i] + " " + x[i] + " " + y[i] + " " + pictures.get(i).getWidth() + " " + pictures.get(i).getHeight()
+                          + " " + sources.get(i));
+        }
+        index.close();
+        System.out.println("Packed " + pictures.size() + " pictures into " + (pages+1) + " page(s) in " + output);
+    }
+
+    public static void main(String[] args) throws IOException {
+        File output = new File(args.length > 0 ? args[0] : SpriteAtlas.FOLDER);
+        String[] folders = DEFAULT_FOLDERS;
+        if (args.length > 1) {
+            folders = Arrays.copyOfRange(args, 1, args.length);
+        }
+        AtlasPacker packer = new AtlasPacker();
+        for (String folder : folders) {
+            packer.addFolder(new File(folder));
+        }
+        packer.write(output);
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * BackgroundCache.java
+ * Keeps the baked backgrounds of the last few rooms shown as accelerated (video memory) images,
+ * so drawing the room every frame is a copy done by the graphics card instead of a full-screen
+ * upload of the room's BufferedImage
+ * Volatile images can lose their contents at any time (display changes, other programs using the card),
+ * so each one is validated before it is drawn and re-copied from the room's own picture when needed
+ * When acceleration is not available the room's BufferedImage is drawn just like before
+ */
+
+import java.awt.*;
+import java.awt.image.VolatileImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class BackgroundCache {
+    //turned off with -Dzelda.volatileBackgrounds=false
+    public static final boolean ENABLED = !"false".equals(System.getProperty("zelda.volatileBackgrounds"));
+    public static final int RESIDENT = 4;           //how many rooms are kept in video memory at once
+
+    //maps a room's baked picture to its accelerated copy (null if it could not be accelerated),
+    // ordered from least to most recently drawn
+    private LinkedHashMap<Image, VolatileImage> cache;
+    private int restores;                           //times a copy had to be (re)made because its contents were lost
+    private int fallbacks;                          //times the plain picture was drawn instead
+
+    public BackgroundCache() {
+        cache = new LinkedHashMap<Image, VolatileImage>(RESIDENT*2, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Image, VolatileImage> eldest) {
+                if (size() > RESIDENT) {
+                    if (eldest.getValue() != null) {
+                        eldest.getValue().flush();
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public int getRestores() {return restores;}
+    public int getFallbacks() {return fallbacks;}
+
+    //draws a room's background at the given spot and size
+    public void draw(Graphics g, Image back, int x, int y, int width, int height) {
+        GraphicsConfiguration gc = ((Graphics2D)g).getDeviceConfiguration();
+        VolatileImage vImg = ENABLED && !GraphicsEnvironment.isHeadless() ? getCopy(gc, back) : null;
+        if (vImg == null) {
+            fallbacks++;
+            g.drawImage(back, x, y, width, height, null);
+            return;
+        }
+
+        do {
+            int state = vImg.validate(gc);
+            if (state == VolatileImage.IMAGE_INCOMPATIBLE) {
+                //the display changed under the copy (moved to another screen), so a new one is made
+                vImg.flush();
+                vImg = makeCopy(gc, back);
+                if (vImg == null) {
+                    fallbacks++;
+                    g.drawImage(back, x, y, width, height, null);
+                    return;
+                }
+            }
+            else if (state == VolatileImage.IMAGE_RESTORED) {
+                restores++;
+                fill(vImg, back);
+            }
+            g.drawImage(vImg, x, y, width, height, null);
+        } while (vImg.contentsLost());
+    }
+
+    //frees the accelerated copy of a background that will not be drawn again (or was re-baked)
+    public void release(Image back) {
+        VolatileImage vImg = cache.remove(back);
+        if (vImg != null) {
+            vImg.flush();
+        }
+    }
+
+    private VolatileImage getCopy(GraphicsConfiguration gc, Image back) {
+        if (cache.containsKey(back)) {
+            return cache.get(back);
+        }
+        return makeCopy(gc, back);
+    }
+
+    private VolatileImage makeCopy(GraphicsConfiguration gc, Image back) {
+        VolatileImage vImg = null;
+        try {
+            vImg = gc.createCompatibleVolatileImage(back.getWidth(null), back.getHeight(null), Transparency.OPAQUE);
+        } catch (RuntimeException e) {}
+        //a volatile image that isn't actually in video memory is no better than the original
+        if (vImg == null || !vImg.getCapabilities().isAccelerated()) {
+            if (vImg != null) {
+                vImg.flush();
+            }
+            cache.put(back, null);
+            return null;
+        }
+        fill(vImg, back);
+        cache.put(back, vImg);
+        return vImg;
+    }
+
+    private void fill(VolatileImage vImg, Image back) {
+        Graphics g = vImg.createGraphics();
+        g.drawImage(back, 0, 0, null);
+        g.dispose();
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * BitmapFont.java
+ * A font drawn ahead of time into one picture (a glyph atlas) in a single colour,
+ * so drawing text is just copying a few pieces of that picture instead of laying
+ * out and rasterizing the TrueType glyphs every frame
+ * Only the printable ASCII characters are kept, anything else is skipped over
+ */
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+class BitmapFont {
+    public static final char FIRST = 32, LAST = 126;    //range of characters in the atlas
+    public static final int COLUMNS = 16;               //glyphs per row of the atlas
+    private static final int PAD = 2;                   //room around each glyph for parts drawn past its advance
+
+    private BufferedImage atlas;
+    private int cellWidth, cellHeight;      //size of each glyph's spot in the atlas
+    private int ascent;                     //distance from the top of a glyph to its baseline
+    private int[] advance;                  //how far along the text moves after each glyph
+
+    public BitmapFont(Font font, Color color) {
+        //a throwaway picture is needed to measure the font
+        Graphics2D scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        FontMetrics metrics = scratch.getFontMetrics(font);
+        scratch.dispose();
+
+        ascent = metrics.getAscent();
+        cellWidth = metrics.getMaxAdvance() + 2*PAD;
+        cellHeight = metrics.getAscent() + metrics.getDescent() + 2*PAD;
+        advance = new int[LAST-FIRST+1];
+
+        int rows = (advance.length + COLUMNS-1) / COLUMNS;
+        atlas = new BufferedImage(cellWidth*COLUMNS, cellHeight*rows, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = atlas.createGraphics();
+        g.setFont(font);
+        g.setColor(color);
+        for (char c = FIRST; c <= LAST; c++) {
+            int i = c - FIRST;
+            advance[i] = metrics.charWidth(c);
+            g.drawString(String.valueOf(c), (i%COLUMNS)*cellWidth + PAD, (i/COLUMNS)*cellHeight + PAD + ascent);
+        }
+        g.dispose();
+    }
+
+    public int getAscent() {return ascent;}
+
+    public int stringWidth(String text) {
+        int width = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= FIRST && c <= LAST) {
+                width += advance[c-FIRST];
+            }
+        }
+        return width;
+    }
+
+    //draws text with its baseline at y, just like Graphics.drawString
+    public void drawString(Graphics g, String text, int x, int y) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < FIRST || c > LAST) {
+                continue;
+            }
+            int glyph = c - FIRST;
+            if (c != ' ') {
+                int srcX = (glyph%COLUMNS)*cellWidth;
+                int srcY = (glyph/COLUMNS)*cellHeight;
+                int dstX = x - PAD;
+                int dstY = y - ascent - PAD;
+                g.drawImage(atlas, dstX, dstY, dstX+cellWidth, dstY+cellHeight, srcX, srcY, srcX+cellWidth, srcY+cellHeight, null);
+            }
+            x += advance[glyph];
+        }
+    }
+}
@@ -6,7 +6,6 @@
  */
 
 import java.awt.*;
-import javax.swing.ImageIcon;
 import java.util.ArrayList;
 
 class Boss {
@@ -14,19 +13,19 @@ class Boss {
     private int health;
     private int iframes = 0;
     
-    private final Image noPic = new ImageIcon("Resources/Boss/noBossPic.png").getImage();
-    private final Image[] imageSetBoss = {new ImageIcon("Resources/Boss/Aquamentus0.png").getImage(), new ImageIcon("Resources/Boss/Aquamentus1.png").getImage(),
-                                          new ImageIcon("Resources/Boss/Aquamentus2.png").getImage(), new ImageIcon("Resources/Boss/Aquamentus3.png").getImage()};
+    //the boss with its mouth open and closed (see Resources/Animations/Aquamentus.txt); the hitboxes leave out
+    // the top and bottom of the picture, for accuracy to the game
+    private final Animation animation = Animation.acquire("Aquamentus");
+    private final Animation.Clip open = animation.getClip("open"), closed = animation.getClip("closed");
   
     //image of the projectile
-    private final Image firePic = new ImageIcon("Resources/Enemies/FireBall.png").getImage();
+    private final Image firePic = AssetManager.acquire("Resources/Enemies/Fireball.png");
     
     private int bossX, bossY, dx;   //boss only moves left and right, so no need for dy
-    private int offset = 30;        //for accuracy to the game, since the collision rectangle doesn't enclose the whole boss
-    private int frame;
-    private Image[] animate;
-    private int wait;
-    private int startWait;
+    private int drawnX;             //where the boss was last drawn (frames between ticks show it moving on from there)
+    private Animator animator;
+    private Hitbox hitbox = new Hitbox();
+    private Rectangle bounds = new Rectangle();     //handed out by getRect
     
     private ArrayList<Projectile> fireballs;    //holds 3 fireballs to be shot at once depending on the location of the player
     private boolean isAttacking;
@@ -40,13 +39,8 @@ class Boss {
         bossY = y;
         dx = 1;
 
-        frame = 0;
-        startWait = 10;
-        wait = startWait;
-
-        animate = new Image[2];
-        animate[0] = imageSetBoss[2];
-        animate[1] = imageSetBoss[3];
+        animator = new Animator(closed);
+        PaletteSwap.prepare(animation.getPictures(), 0);
 
         isAttacking = true;
         fireballs = new ArrayList<Projectile>();
@@ -61,30 +55,46 @@ class Boss {
     public int getX() {return bossX;}
     public int getY() {return bossY;}
     public int getHealth() {return health;}
-    public Rectangle getRect() {return new Rectangle(bossX, bossY+offset, animate[frame].getWidth(null),animate[frame].getHeight(null)-2*offset);}
+    //the same rectangle every time, moved to where the boss is
+    public Rectangle getRect() {
+        Animation.Frame body = animator.getFrame();
+        bounds.setBounds(bossX+body.hitX, bossY+body.hitY, body.hitWidth, body.hitHeight);
+        return bounds;
+    }
+
+    //where the boss can be hit: its hitbox, or the whole picture when hits are pixel-exact
+    public Hitbox getHitbox() {
+        Animation.Frame body = animator.getFrame();
+        int x = bossX+body.drawX, y = bossY+body.drawY;
+        if (body.mask != null) {
+            return hitbox.set(x, y, body.width, body.height, body.mask, x, y);
+        }
+        return hitbox.set(bossX+body.hitX, bossY+body.hitY, body.hitWidth, body.hitHeight, null, 0, 0);
+    }
 
-    public void draw(Graphics g) {
-        //draws all fireballs
-        for (Projectile shot : fireballs) {
-            shot.draw(g);
+    public void draw(RenderQueue queue) {
+        //draws all fireballs (counted rather than iterated, so drawing allocates nothing)
+        for (int i = 0; i < fireballs.size(); i++) {
+            fireballs.get(i).draw(queue);
         }
         //draws boss with iframes same as with player and enemy
+        Animation.Frame step = animator.getFrame();
+        int moveX = bossX-drawnX;
+        drawnX = bossX;
         if (iframes%5 == 1 || iframes%5 == 2) {
-            g.drawImage(noPic, bossX, bossY, null);
+            queue.add(RenderQueue.LAYER_ACTORS, PaletteSwap.hidden(step.image), bossX+step.drawX, bossY+step.drawY, moveX, 0);
         }
-        else {
-            g.drawImage(animate[frame], bossX, bossY, null);
-        }
-        if (wait == 0) {
-            frame = (frame + 1) % animate.length;
-            wait = startWait;
+        else if (iframes%5 == 3) {
+            queue.add(RenderQueue.LAYER_ACTORS, PaletteSwap.flash(step.image), bossX+step.drawX, bossY+step.drawY, moveX, 0);
         }
         else {
-            wait--;
+            queue.add(RenderQueue.LAYER_ACTORS, step.image, bossX+step.drawX, bossY+step.drawY, moveX, 0);
         }
     }
 
     public void update() {
+        //animates the boss (done here rather than when drawing, so drawing doesn't change the boss)
+        animator.tick();
         //moves the boss one way, until a certain point is reached and it moves the other way
         bossX -= dx;
         if (bossX < 500 || bossX > 620) {
@@ -93,7 +103,7 @@ class Boss {
         shoot();
         resetFire();
         //sees if the boss is hit by the player's sword or projectile, and subsequently reduces health and sets iframes
-        if ((player.getAttackRect().intersects(getRect()) || player.getLaser().hit(getRect()) && iframes == 0)) {
+        if ((player.getSwordHitbox().touches(getHitbox()) || player.getLaser().hit(getHitbox()) && iframes == 0)) {
             player.getLaser().sendOut();
             health--;
             iframes = 30;   //0.5 second invincibility
@@ -102,11 +112,12 @@ class Boss {
             iframes--;
         }
         //sees if the player is hit by the body of the boss
-        player.checkHitByEntity(getRect());
+        player.checkHitByEntity(getHitbox());
     }
 
     public void shoot() {
-        for (Projectile shot : fireballs) {
+        for (int i = 0; i < fireballs.size(); i++) {        //counted rather than iterated, so nothing is allocated each tick
+            Projectile shot = fireballs.get(i);
             //moves each shot
             shot.move(this);
             //sees if any fireball hits the player
@@ -122,30 +133,21 @@ class Boss {
             }
         }
         //if the boss is attacking, its mouth is open, otherwise, its mouth is closed
-        if (isAttacking) {
-            animate[0] = imageSetBoss[0];
-            animate[1] = imageSetBoss[1];
-        }
-        else {
-            animate[0] = imageSetBoss[2];
-            animate[1] = imageSetBoss[3];
-        }
+        animator.setClip(isAttacking ? open : closed);
     }
 
     public void resetFire() {
         boolean reset = false;
-        for (Projectile shot : fireballs) {
-            if (shot.getShotMade()) {
+        for (int i = 0; i < fireballs.size(); i++) {
+            if (fireballs.get(i).getShotMade()) {
                 //if any of the shots have the potential to be shot again, a reset can be done
                 reset = true;
             }
         }
         if (reset) {
-            //all the current fireballs are removed from the arraylist, and a new set of 3 are added
-            //to the arraylist (with respect to the player's location)
-            fireballs.removeAll(fireballs);
-            for (int i = 0; i < 3; i++) {
-                fireballs.add(new Projectile(player, this, bossX, bossY, i+1, firePic));
+            //all 3 fireballs are shot again from the boss (with respect to the player's location)
+            for (int i = 0; i < fireballs.size(); i++) {
+                fireballs.get(i).aim(player, this, bossX, bossY, i+1);
             }
             scream.play();
             isAttacking = true;
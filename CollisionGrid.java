@@ -0,0 +1,171 @@
+/**
+ * CollisionGrid.java
+ * Splits a room into tile-sized cells and remembers which obstacles lie in each one, so something
+ * moving only has to be checked against the obstacles in the cells it overlaps instead of every
+ * obstacle in the room
+ * The obstacles it finds are still checked in the order they are in the room's list: an obstacle pushes
+ * whatever hits it back, which can move it into a later obstacle, just like going down the whole list did
+ */
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+
+class CollisionGrid {
+    private Obstacle[] obstacles;
+    private int cellWidth, cellHeight;
+    private int originX, originY;       //top left of the first cell
+    private int columns, rows;
+    private int[][] cells;              //indices of the obstacles in each cell, smallest first
+
+    //for finding the obstacles near something without finding one twice
+    private int[] found;
+    private int[] seen;                 //the search each obstacle was last found in
+    private int search;
+    private Rectangle path = new Rectangle();     //the area a sweep goes through
+
+    public CollisionGrid(List<Obstacle> list, int cellWidth, int cellHeight) {
+        obstacles = list.toArray(new Obstacle[0]);
+        this.cellWidth = Math.max(1, cellWidth);
+        this.cellHeight = Math.max(1, cellHeight);
+        found = new int[obstacles.length];
+        seen = new int[obstacles.length];
+
+        if (obstacles.length == 0) {
+            cells = new int[0][];
+            return;
+        }
+        int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE, right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+        for (Obstacle obstacle : obstacles) {
+            Rectangle rect = obstacle.getRect();
+            left = Math.min(left, rect.x);
+            top = Math.min(top, rect.y);
+            right = Math.max(right, rect.x + rect.width);
+            bottom = Math.max(bottom, rect.y + rect.height);
+        }
+        originX = Math.floorDiv(left, this.cellWidth) * this.cellWidth;
+        originY = Math.floorDiv(top, this.cellHeight) * this.cellHeight;
+        columns = Math.floorDiv(right - 1 - originX, this.cellWidth) + 1;
+        rows = Math.floorDiv(bottom - 1 - originY, this.cellHeight) + 1;
+
+        //counts the obstacles in each cell first, so every cell gets an array of just the right size
+        int[] counts = new int[columns*rows];
+        for (Obstacle obstacle : obstacles) {
+            forCells(obstacle.getRect(), (cell) -> counts[cell]++);
+        }
+        cells = new int[columns*rows][];
+        for (int c = 0; c < cells.length; c++) {
+            cells[c] = new int[counts[c]];
+        }
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < obstacles.length; i++) {
+            int index = i;
+            forCells(obstacles[i].getRect(), (cell) -> cells[cell][counts[cell]++] = index);
+        }
+    }
+
+    public int size() {return obstacles.length;}
+
+    //stops the player at any obstacle they are in
+    public void collide(Player player) {
+        int count = near(player.getRect(), -1);
+        for (int k = 0; k < count; k++) {
+            int index = found[k];
+            if (obstacles[index].collide(player)) {
+                //pushed back, so the obstacles after this one are looked up again around where the player is now
+                count = near(player.getRect(), index);
+                k = -1;
+            }
+        }
+    }
+
+    //stops the enemy at any obstacle it is in
+    public void collide(Enemy enemy) {
+        int count = near(enemy.getRect(), -1);
+        for (int k = 0; k < count; k++) {
+            int index = found[k];
+            if (obstacles[index].collide(enemy)) {
+                count = near(enemy.getRect(), index);
+                k = -1;
+            }
+        }
+    }
+
+    //whether a rectangle is in any of the obstacles
+    public boolean hits(Rectangle rect) {
+        int count = near(rect, -1);
+        for (int k = 0; k < count; k++) {
+            if (obstacles[found[k]].getRect().intersects(rect)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //how far through a move (0 to 1) a box moving by dx,dy first runs into an obstacle, or Sweep.MISS
+    // if it gets through (see Sweep; for shots, which move far enough in a tick to skip over a thin border)
+    //obstacles the box is already in when it starts are left out, so only ones it runs into count
+    // (a shot starts where its shooter is, which can be partly inside the wall they are standing against)
+    public double sweep(Rectangle box, int dx, int dy) {
+        double first = Sweep.MISS;
+        int count = near(Sweep.path(box.x, box.y, box.width, box.height, dx, dy, path), -1);
+        for (int k = 0; k < count; k++) {
+            Rectangle rect = obstacles[found[k]].getRect();
+            if (rect.intersects(box)) {
+                continue;
+            }
+            double time = Sweep.time(box.x, box.y, box.width, box.height, dx, dy, rect);
+            if (time != Sweep.MISS && (first == Sweep.MISS || time < first)) {
+                first = time;
+            }
+        }
+        return first;
+    }
+
+    //puts the obstacles (after the one numbered after) in the cells a rectangle overlaps into found, in order,
+    // and gives back how many there are
+    private int near(Rectangle rect, int after) {
+        search++;
+        int count = 0;
+        if (rect.width <= 0 || rect.height <= 0 || cells.length == 0) {
+            return 0;
+        }
+        int firstColumn = Math.max(0, Math.floorDiv(rect.x - originX, cellWidth));
+        int lastColumn = Math.min(columns - 1, Math.floorDiv(rect.x + rect.width - 1 - originX, cellWidth));
+        int firstRow = Math.max(0, Math.floorDiv(rect.y - originY, cellHeight));
+        int lastRow = Math.min(rows - 1, Math.floorDiv(rect.y + rect.height - 1 - originY, cellHeight));
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                for (int index : cells[row*columns + column]) {
+                    if (index > after && seen[index] != search) {
+                        seen[index] = search;
+                        found[count++] = index;
+                    }
+                }
+            }
+        }
+        //one cell's obstacles are already in order, only ones from several cells need sorting
+        if (firstRow != lastRow || firstColumn != lastColumn) {
+            Arrays.sort(found, 0, count);
+        }
+        return count;
+    }
+
+    private interface CellAction {
+        void run(int cell);
+    }
+
+    //runs an action for every cell an obstacle's rectangle covers
+    private void forCells(Rectangle rect, CellAction action) {
+        if (rect.width <= 0 || rect.height <= 0) {
+            return;
+        }
+        int lastColumn = Math.floorDiv(rect.x + rect.width - 1 - originX, cellWidth);
+        int lastRow = Math.floorDiv(rect.y + rect.height - 1 - originY, cellHeight);
+        for (int row = Math.floorDiv(rect.y - originY, cellHeight); row <= lastRow; row++) {
+            for (int column = Math.floorDiv(rect.x - originX, cellWidth); column <= lastColumn; column++) {
+                action.run(row*columns + column);
+            }
+        }
+    }
+}
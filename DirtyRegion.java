@@ -0,0 +1,121 @@
+/**
+ * DirtyRegion.java
+ * Keeps track of the parts of the screen that changed between two frames, so only those
+ * parts have to be repainted instead of the whole 768x672 screen
+ * Every frame, the areas of everything that moves are marked; the region to repaint is
+ * then where things were last frame (to erase them) plus where they are now
+ * When the region is outlined on screen (to debug it), the edges of last frame's outlines are
+ * repainted too, on their own, so the outlines don't stay behind
+ */
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+
+class DirtyRegion {
+    private int width, height;                  //size of the whole screen
+    private ArrayList<Rectangle> previous;      //areas marked last frame
+    private ArrayList<Rectangle> current;       //areas marked this frame
+    private ArrayList<Rectangle> region;        //merged areas to repaint this frame
+    private ArrayList<Rectangle> repaint;       //the region, plus the edges of last frame's when it is outlined
+    private boolean all;                        //the whole screen has to be repainted
+    private boolean outlined;                   //the region is drawn around on screen each frame
+
+    private double touched;                     //share of the screen's pixels repainted last frame
+    private double averageTouched;              //running average of the above
+
+    public DirtyRegion(int width, int height) {
+        this.width = width;
+        this.height = height;
+        previous = new ArrayList<Rectangle>();
+        current = new ArrayList<Rectangle>();
+        region = new ArrayList<Rectangle>();
+        repaint = new ArrayList<Rectangle>();
+        averageTouched = 1;
+    }
+
+    //the merged areas of this frame (without the edges of last frame's outlines)
+    public ArrayList<Rectangle> getRegion() {return region;}
+    public double getTouched() {return touched;}
+    public double getAverageTouched() {return averageTouched;}
+
+    //marks an area that is drawn this frame
+    public void mark(int x, int y, int w, int h) {
+        if (w > 0 && h > 0) {
+            current.add(new Rectangle(x, y, w, h));
+        }
+    }
+
+    //marks the whole screen (screens or rooms being switched)
+    public void markAll() {
+        all = true;
+    }
+
+    //the region is outlined on screen, one pixel inside each of its areas
+    public void setOutlined(boolean outlined) {
+        this.outlined = outlined;
+    }
+
+    //works out the areas to repaint for this frame, merging any that overlap, and starts the next frame
+    public ArrayList<Rectangle> flush() {
+        //last frame's outlines are wiped by repainting just their edges; these aren't merged with the rest
+        // (that would grow them into the whole area again, and every frame after) and aren't outlined themselves
+        repaint.clear();
+        if (outlined && !all) {
+            for (Rectangle rect : region) {
+                repaint.add(new Rectangle(rect.x, rect.y, rect.width, 1));
+                repaint.add(new Rectangle(rect.x, rect.y + rect.height - 1, rect.width, 1));
+                repaint.add(new Rectangle(rect.x, rect.y, 1, rect.height));
+                repaint.add(new Rectangle(rect.x + rect.width - 1, rect.y, 1, rect.height));
+            }
+        }
+        region.clear();
+        if (all) {
+            region.add(new Rectangle(0, 0, width, height));
+        }
+        else {
+            for (Rectangle rect : previous) {
+                merge(rect);
+            }
+            for (Rectangle rect : current) {
+                merge(new Rectangle(rect));
+            }
+        }
+
+        //the regions don't overlap after merging, so their areas can be summed up (the outlines' edges are left out,
+        // they are only there for debugging)
+        long area = 0;
+        Rectangle screen = new Rectangle(0, 0, width, height);
+        for (Rectangle rect : region) {
+            Rectangle visible = rect.intersection(screen);
+            if (!visible.isEmpty()) {
+                area += (long)visible.width*visible.height;
+            }
+        }
+        touched = Math.min(1.0, (double)area/((long)width*height));
+        averageTouched = averageTouched*0.95 + touched*0.05;
+
+        ArrayList<Rectangle> swap = previous;
+        previous = current;
+        current = swap;
+        current.clear();
+        all = false;
+        repaint.addAll(region);
+        return repaint;
+    }
+
+    //adds an area to the region, swallowing up (and being swallowed by) any area it overlaps
+    private void merge(Rectangle rect) {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < region.size(); i++) {
+                if (region.get(i).intersects(rect)) {
+                    rect.add(region.remove(i));
+                    merged = true;
+                    break;
+                }
+            }
+        }
+        region.add(rect);
+    }
+}
@@ -55,6 +55,8 @@ class Dungeon {
     }
     
     public ArrayList<Room> getArea() {return fullArea;}
+    //the rooms right next to a room (up, right, down and left) that exist
+    public ArrayList<Room> getNeighbours(Room room) {return RoomLoader.neighbours(fullArea, 4, room);}
     public Boss getBoss() {return aqua;}
     public Item getPlayerLaser() {return laser;}
     public Item getTriforce() {return triforce;}
@@ -6,9 +6,7 @@
  */
 
 import java.awt.Image;
-import java.awt.Graphics;
 import java.util.Random;
-import javax.swing.ImageIcon;
 import java.awt.Rectangle;
 
 class Enemy {
@@ -18,34 +16,28 @@ class Enemy {
     //directions
     public final int UP = 0, RIGHT = 1, DOWN = 2, LEFT = 3;
 
-    //picture to show for certain frames when hit
-    public final Image noPic = new ImageIcon("Resources/Enemies/noPic.png").getImage();
-    //image sets for each enemy type
-    public final Image[] imageSetStalfos = {new ImageIcon("Resources/Enemies/Stalfos0.png").getImage(),new ImageIcon("Resources/Enemies/Stalfos1.png").getImage()};
-    
-    public final Image[][] imageSetRope = {{new ImageIcon("Resources/Enemies/Rope0.png").getImage(),new ImageIcon("Resources/Enemies/Rope1.png").getImage()},
-                                           {new ImageIcon("Resources/Enemies/Rope2.png").getImage(),new ImageIcon("Resources/Enemies/Rope3.png").getImage()}};
-
-    public final Image[][] imageSetWizzrobe = {{new ImageIcon("Resources/Enemies/Wizzrobe0.png").getImage(),new ImageIcon("Resources/Enemies/Wizzrobe1.png").getImage()},
-                                               {new ImageIcon("Resources/Enemies/Wizzrobe2.png").getImage(),new ImageIcon("Resources/Enemies/Wizzrobe3.png").getImage()}};
+    //clips of the enemy's type facing each direction (see Resources/Animations)
+    private Animation animation;
+    private Animation.Clip[] walkClips;
 
     private int enemyX, enemyY, dx, dy, dir;
-    private int offset;             //sets an offset for the rectangles (to make it easier for player to not get hit)
+    private int drawnX, drawnY;     //where the enemy was last drawn (frames between ticks show it moving on from there)
     private int moveDir;            //sets the direction for the enemy to move in (random)
     private String type;            //sets type of enemy
 
-    private Image[] animate;        //frames of animation
-    private int frame;              //current frame
-    private int wait;               //animation delay counter (decrements every frame, when 0, animation progresses to next frame)
-    private int startWait;          //animation delay timer ("wait" resets to this every time the frame progresses)    
+    private Animator animator;      //frames of animation; their hitboxes leave some slack (to make it easier for player to not get hit)
+    private Hitbox hitbox = new Hitbox();
+    private Rectangle bounds = new Rectangle();     //handed out by getRect
 
     private int health;
+    private int tier;               //stronger kinds of an enemy have more health and are drawn in other colours
     private int iframes;            //invincibility frames, makes sure enemies can't be hit quickly in succession
 
     private Player player;          
     private Room currentRoom;
 
     private Projectile fireball;    //exclusive to one type of enemy and its main form of attack
+    private Image firePic;
 
     private Sound damaged = new Sound ("Resources/Sound/LOZ_Enemy_Hit.wav");        //plays whenever enemy is hit
 
@@ -54,7 +46,6 @@ class Enemy {
         this.type = type;
         enemyX = x;
         enemyY = y;
-        offset = 10;
         //chooses random direction (0-9; since directions are 0-3, theres a 40% chance of moving and a 60% chance of staying in the same spot)
         moveDir = rand.nextInt(10);
         dir = RIGHT;            //starting direction is right
@@ -64,89 +55,94 @@ class Enemy {
 
         currentRoom = room;
 
-        animate = new Image[2];
-        //sets health and frames of animation for each type of enemy, with wizzrobes having a fireball
+        animation = Animation.acquire(type);
+        PaletteSwap.prepare(animation.getPictures(), tier);
+        walkClips = animation.directional("walk");
+        animator = new Animator(walkClips[dir]);
+        //sets health for each type of enemy, with wizzrobes having a fireball
         switch (type) {
             case "Stalfos":
-            animate[0] = imageSetStalfos[0];
-            animate[1] = imageSetStalfos[1];
             health = 2;
             break;
             case "Rope":
-            animate[0] = imageSetRope[0][0];
-            animate[1] = imageSetRope[0][1];
             health = 2;
             break;
             case "Wizzrobe":
-            animate[0] = imageSetWizzrobe[0][0];
-            animate[1] = imageSetWizzrobe[0][1];
             health = 3;
-            fireball = new Projectile(enemyX, enemyY, 10, 10, new ImageIcon("Resources/Enemies/FireBall.png").getImage());
+            firePic = AssetManager.acquire("Resources/Enemies/Fireball.png");
+            fireball = new Projectile(enemyX, enemyY, 10, 10, firePic);
         }
-        frame = 0;
-        startWait = 12;
-        wait = startWait;
     }
 
     public int getX() {return enemyX;}
     public int getY() {return enemyY;}
-    public int getWidth() {return animate[frame].getWidth(null);}
-    public int getHeight() {return animate[frame].getHeight(null);}
+    public int getWidth() {return animator.getFrame().width;}
+    public int getHeight() {return animator.getFrame().height;}
     public int getDX() {return dx;}
     public int getDY() {return dy;}
     public int getDir() {return dir;}
     public int getHealth() {return health;}
     public Room getRoom() {return currentRoom;}
-    public Rectangle getRect() {return new Rectangle(enemyX+offset, enemyY+offset, getWidth()-2*offset, getHeight()-2*offset);}
+    //the same rectangle every time, moved to where the enemy is
+    public Rectangle getRect() {
+        Animation.Frame body = animator.getFrame();
+        bounds.setBounds(enemyX+body.hitX, enemyY+body.hitY, body.hitWidth, body.hitHeight);
+        return bounds;
+    }
     public Projectile getFireball() {return fireball;}
+    //where the enemy can be hit: its hitbox, or the whole picture when hits are pixel-exact
+    public Hitbox getHitbox() {
+        Animation.Frame body = animator.getFrame();
+        int x = enemyX+body.drawX, y = enemyY+body.drawY;
+        if (body.mask != null) {
+            return hitbox.set(x, y, body.width, body.height, body.mask, x, y);
+        }
+        return hitbox.set(enemyX+body.hitX, enemyY+body.hitY, body.hitWidth, body.hitHeight, null, 0, 0);
+    }
 
     public void setX(int newX) {enemyX = newX;}
     public void setY(int newY) {enemyY = newY;}
     public void setHealth(int newHealth) {health = newHealth;}
     public void setIFrames(int newIFrames) {iframes = newIFrames;}
 
-    public void draw(Graphics g) {
-        //draws enemies depending on direction and current frame
-        switch (type) {
-            case "Stalfos":
-            for (int i = 0; i < imageSetStalfos.length; i++) {
-                animate[i] = imageSetStalfos[i];
-            }
-            break;
-            case "Rope":
-            for (int i = 0; i < imageSetRope[0].length; i++) {
-                if (dir == RIGHT) {
-                    animate[i] = imageSetRope[0][i];
-                }
-                else if (dir == LEFT) {
-                    animate[i] = imageSetRope[1][i];
-                }
-            }
-            break;
-            case "Wizzrobe":
-            for (int i = 0; i < imageSetWizzrobe[0].length; i++) {
-                if (dir == RIGHT) {
-                    animate[i] = imageSetWizzrobe[0][i];
-                }
-                else if (dir == LEFT) {
-                    animate[i] = imageSetWizzrobe[1][i];
-                }
-            }
-            //fireball drawn for wizzrobes
-            fireball.draw(g);
-            break;
-            default : System.out.println("Error!");
-            break;
+    //makes the enemy a stronger kind (1 or 2): one more hit point per tier, and its colours swapped
+    public void setTier(int newTier) {
+        health += newTier - tier;
+        tier = newTier;
+        PaletteSwap.prepare(animation.getPictures(), tier);
+    }
+
+    //lets go of the shared pictures once the enemy is defeated
+    public void dispose() {
+        Animation.release(animation);
+        if (firePic != null) {
+            AssetManager.release(firePic);
+        }
+    }
+
+    public void draw(RenderQueue queue) {
+        //draws enemies depending on direction and current frame (types without pictures for a direction
+        // keep facing the way they last did)
+        animator.setClip(walkClips[dir]);
+        //fireball drawn for wizzrobes
+        if (fireball != null) {
+            fireball.draw(queue);
         }
         
-        //while an enemy is going through their invincibility frames, the 1st and 2nd frames will be a blank image
-        // and the rest will show the enemy; emulates a flickering effect to show damage has been dealt
+        //while an enemy is going through their invincibility frames, the 1st and 2nd frames will be see-through,
+        // the 3rd flashes white and the rest will show the enemy; emulates a flickering effect to show damage has been dealt
+        //(all of them are the same sprite with another palette)
+        Animation.Frame step = animator.getFrame();
+        Image sprite = PaletteSwap.tier(step.image, tier);
         if (iframes%5 == 1 || iframes%5 == 2) {
-            g.drawImage(noPic, enemyX, enemyY, null);
+            sprite = PaletteSwap.hidden(sprite);
         }
-        else {
-            g.drawImage(animate[frame], enemyX, enemyY, null);
+        else if (iframes%5 == 3) {
+            sprite = PaletteSwap.flash(sprite);
         }
+        queue.add(RenderQueue.LAYER_ACTORS, sprite, enemyX+step.drawX, enemyY+step.drawY, enemyX-drawnX, enemyY-drawnY);
+        drawnX = enemyX;
+        drawnY = enemyY;
     }
 
     public void move(){
@@ -168,6 +164,10 @@ class Enemy {
                 fireball.setDir((fireball.getDir()+1)%4); //direction goes 0,1,2,3 then repeats
             }
             fireball.move(enemyX, enemyY);
+            if (player.getState().equals("dungeon")) {
+                fireball.stopAt(currentRoom.getBorderGrid());
+            }
+            fireball.stopAt(currentRoom.getSquareGrid());
             break;
             default: System.out.println("Error!");
             break;
@@ -181,13 +181,8 @@ class Enemy {
         //the move direction is re-randomized, so the enemy either
         //switches directions, keeps moving in the same direction
         //or stops for a bit
-        if (wait == 0) {
+        if (animator.tick()) {
             moveDir = rand.nextInt(10);
-            frame = (frame + 1) % animate.length;
-            wait = startWait;
-        }
-        else {
-            wait--;
         }
 
         //moves enemy depending on direction
@@ -213,38 +208,33 @@ class Enemy {
 
     public void stopMoving() {
         //stops the enemy from moving any further if borders or blocks are hit
+        //(only the ones near the enemy are checked, see CollisionGrid)
         if (player.getState().equals("overworld")) {
-            for(Obstacle barrier : currentRoom.getEOBorders()) {
-                barrier.collide(this);
-            }        
+            currentRoom.getEOBorderGrid().collide(this);
         }
         else if (player.getState().equals("dungeon")) {
-            for(Obstacle barrier : currentRoom.getEDBorders()) {
-                barrier.collide(this);
-            }        
-        }
-        for(Obstacle block : currentRoom.getCollideSquares()) {
-            block.collide(this);
+            currentRoom.getEDBorderGrid().collide(this);
         }
+        currentRoom.getSquareGrid().collide(this);
     }
 
     public void hitByPlayer() {
         //checks if the player has hit the enemy, then reduces their health and makes them invincible for some tme
-        if (this.getRect().intersects(player.getAttackRect()) && iframes == 0) {
+        if (getHitbox().touches(player.getSwordHitbox()) && iframes == 0) {
             if (health > 1) { 
                 damaged.play();
             }
             iframes = 30;
             health--;
         }
-        else if (iframes > 0) {
-            iframes--;
+        else {
+            coolDown();
         }
     }
 
     public void hitByShot() {
         //does the same thing as above but when the player's projectile hits them
-        if (player.getLaser().hit(this.getRect())) {
+        if (player.getLaser().hit(getHitbox())) {
             player.getLaser().sendOut();
             if (health > 1) { 
                 damaged.play();
@@ -252,11 +242,31 @@ class Enemy {
             iframes = 30;
             health--;
         }
-        else if (iframes > 0) {
+        else {
+            coolDown();
+        }
+    }
+
+    //what hitByPlayer and hitByShot do when the enemy isn't hit: its iframes run down by one
+    // (rooms call this instead of them for enemies nowhere near the sword, see Room.hitEnemy)
+    public void coolDown() {
+        if (iframes > 0) {
             iframes--;
         }
     }
 
+    //whether the enemy is standing in a border or block it would have been stopped by (see stopMoving)
+    public boolean isBlocked() {
+        Rectangle rect = getRect();
+        if (player.getState().equals("overworld") && currentRoom.getEOBorderGrid().hits(rect)) {
+            return true;
+        }
+        else if (player.getState().equals("dungeon") && currentRoom.getEDBorderGrid().hits(rect)) {
+            return true;
+        }
+        return currentRoom.getSquareGrid().hits(rect);
+    }
+
     public void charge() {
         //if the player is within line of sight of the enemy (ie. their center lies between the top and bottom of enemy if facing right or left,
         // or between the right and left is enemy is facing up or down), and the enemy is facing in the player's direction, then the enemy is given
@@ -0,0 +1,560 @@
+/**
+ * GPanel.java
+ * The game panel; holds the game's state, updates it each tick and draws it
+ * It is painted by swing off of a timer, or handed to a GameLoop for active rendering
+ */
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class GPanel extends JPanel implements ActionListener, KeyListener{
+    private static final long serialVersionUID = 1L;
+
+    public static final int WIDTH = 768, HEIGHT = 672;
+    //draws through a page-flipped canvas on its own thread unless -Dzelda.loop=timer is passed
+    public static final boolean ACTIVE_RENDERING = !"timer".equals(System.getProperty("zelda.loop"));
+    private Timer time;
+    private volatile boolean activeLoop;     //true when a GameLoop drives the game instead of the timer
+
+    //with -Dzelda.native=true the game is drawn at the NES' own resolution into one small image,
+    // which is then scaled up to the window once per frame (the window can be resized in this mode)
+    public static final boolean NATIVE_RENDERING = Boolean.getBoolean("zelda.native");
+    //only scales the native image by whole numbers (sharper pixels, but with black borders)
+    public static final boolean INTEGER_SCALING = Boolean.getBoolean("zelda.integerScale");
+    private BufferedImage nativeFrame;
+    private BackgroundCache backgrounds = new BackgroundCache();    //room backgrounds kept in video memory
+
+    //only the parts of the screen that changed are repainted, unless -Dzelda.dirtyRects=false is passed (on the
+    // active game loop, only while its back buffer keeps the frame drawn before; see GameLoop)
+    public static final boolean DIRTY_RECTS = !"false".equals(System.getProperty("zelda.dirtyRects"));
+    //outlines the repainted parts and shows the share of the screen repainted (-Dzelda.showDirty=true)
+    public static final boolean SHOW_DIRTY = Boolean.getBoolean("zelda.showDirty");
+    private DirtyRegion dirty = new DirtyRegion(WIDTH, HEIGHT);
+    private RenderQueue queue = new RenderQueue();     //sprites of the current tick, drawn on top of the room
+    //draws the game screen into plain int pixels instead of through Java2D (-Dzelda.renderer=software)
+    private SoftwareRenderer software = SoftwareRenderer.ENABLED ? new SoftwareRenderer(WIDTH, HEIGHT) : null;
+    private String lastScreen;      //the screen, room and health the last frame was drawn with
+    private Room lastRoom;
+    private int lastHealth;
+    private Room queuedRoom;        //room the render queue last queued sprites for
+    private Font retroType;         //an arcade-like font
+    private boolean[] keys;         //keyboard keys
+    
+    private volatile String screen; //the screen being shown on the frame
+    private Image introScreen;
+    private Image gameOverScreen;
+    private Image winScreen;
+
+    private Player link;
+    //the keys the player can use
+    private int[] playerKeys = {KeyEvent.VK_W, KeyEvent.VK_D, KeyEvent.VK_S, KeyEvent.VK_A, KeyEvent.VK_J};
+    private Image heartPic;
+    private Hud hud;                //the lives bar on top of the game screen
+    private BitmapFont winFont;     //pre-drawn font for the win screen
+
+    //the sound played when the player picks up the sword upgrade
+    private Sound itemPickUp = new Sound("Resources/Sound/LOZ_Get_Heart.wav");
+    //the background music (null until it has been loaded)
+    private Sound overWorldMusic;
+
+    //the world, fonts and music are loaded on this thread while the intro screen is up
+    private Thread loader;
+    private CountDownLatch essentials = new CountDownLatch(1);     //let go once the player, lives bar and fonts are made (or failed to be)
+    private volatile Throwable loadFailure;                         //why they couldn't be made, if they couldn't
+    private volatile boolean startReady;                            //the rooms around where the player spawns are baked
+    private volatile boolean startRequested;                        //a key was pressed on the intro screen
+    private AtomicInteger roomsLoaded = new AtomicInteger();
+    private volatile int roomsToLoad;
+    private volatile boolean loaded;                                //everything has been loaded
+    private volatile HotReload hotReload;                           //re-bakes edited rooms (-Dzelda.hotReload=true)
+
+    @SuppressWarnings("try")
+    public GPanel() {
+        setPreferredSize(new Dimension(WIDTH, HEIGHT));
+        addKeyListener(this);
+        dirty.setOutlined(SHOW_DIRTY);
+        if (NATIVE_RENDERING) {
+            nativeFrame = new BufferedImage(WIDTH/Room.scaleFactor, HEIGHT/Room.scaleFactor, BufferedImage.TYPE_INT_RGB);
+        }
+
+        screen = "intro";
+        keys = new boolean[KeyEvent.KEY_LAST+1];
+
+        try (Profiler.Phase phase = Profiler.begin("screens")) {
+            introScreen = new ImageIcon("Resources/Screens/introScreen.png").getImage();
+            winScreen = new ImageIcon("Resources/Screens/winScreen.png").getImage();
+            gameOverScreen = new ImageIcon("Resources/Screens/gameOverScreen.png").getImage();
+        }
+
+        //everything else is loaded in the background, so the intro screen shows right away
+        loader = new Thread(this::load, "world-loader");
+        loader.setDaemon(true);
+        loader.start();
+
+        time = new Timer(20, this);
+    }
+
+    //builds the world on the loader thread: first what every frame of the game needs (the player, lives bar
+    // and fonts), then the region the player starts in and the ones around it, then the music and every other room
+    @SuppressWarnings("try")
+    private void load() {
+        Player player;
+        ArrayList<Room> startRooms = new ArrayList<Room>();
+        List<Room> rooms;
+        try {
+            //the player makes the overworld and dungeon, with every room (not baked yet) and sprite
+            try (Profiler.Phase phase = Profiler.begin("world")) {
+                player = new Player(140,400, playerKeys);
+            }
+            Image heart = AssetManager.acquire("Resources/Link/healthHeart.png");
+
+            //loads in the arcade-like font (help from internet)
+            Font font;
+            try (Profiler.Phase phase = Profiler.begin("font", "PressStart2P-Regular.ttf")) {
+                font = Font.createFont(Font.TRUETYPE_FONT, new File("Resources/Fonts/PressStart2P-Regular.ttf")).deriveFont(25f);
+                GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
+                ge.registerFont(font);
+            } catch (IOException | FontFormatException e) {
+                e.printStackTrace();
+                font = new Font(Font.MONOSPACED, Font.BOLD, 25);
+            }
+
+            //the latch makes these visible to whichever thread waits on it
+            link = player;
+            heartPic = heart;
+            retroType = font;
+            try (Profiler.Phase phase = Profiler.begin("bitmap fonts")) {
+                hud = new Hud(new BitmapFont(font, Color.RED), heart);
+                winFont = new BitmapFont(font, Color.GREEN);
+            }
+            startRooms.add(player.getRoom());
+            startRooms.addAll(player.getOverWorld().getNeighbours(player.getRoom()));
+            //other rooms are baked as the player gets near them, unless -Dzelda.lazyRooms=false
+            rooms = RoomLoader.LAZY ? new ArrayList<Room>()
+                    : RoomLoader.rooms(Arrays.asList(player.getOverWorld().getArea(), player.getDungeon().getArea()));
+            rooms.removeAll(startRooms);
+            roomsToLoad = startRooms.size() + rooms.size();
+        } catch (RuntimeException | Error e) {
+            //the game can't start without these, so whoever waits for them is told instead of waiting forever
+            loadFailure = e;
+            e.printStackTrace();
+            repaint();
+            return;
+        } finally {
+            essentials.countDown();
+        }
+
+        try (Profiler.Phase phase = Profiler.begin("start rooms")) {
+            RoomLoader.loadAll(startRooms, this::roomLoaded);
+        }
+        //a key pressed on the intro screen before now starts the game here, rather than the key waiting for it
+        startReady = true;
+        if (startRequested) {
+            beginGame();
+        }
+        if (HotReload.ENABLED) {
+            hotReload = new HotReload(RoomLoader.rooms(Arrays.asList(player.getOverWorld().getArea(), player.getDungeon().getArea())));
+            hotReload.start();
+        }
+
+        Sound music = new Sound("Resources/Sound/LOZ_Overworld_Music.wav");
+        synchronized (this) {
+            overWorldMusic = music;
+            if (!(screen.equals("gameover") || screen.equals("win"))) {
+                overWorldMusic.playMusic();
+            }
+        }
+
+        try (Profiler.Phase phase = Profiler.begin("other rooms")) {
+            RoomLoader.loadAll(rooms, this::roomLoaded);
+        }
+        loaded = true;
+        if (!activeLoop) {
+            repaint();
+        }
+
+        if (IndexedImages.REPORT) {
+            IndexedImages.report();
+            AssetManager.report();
+            PaletteSwap.report();
+            RoomLoader.report();
+        }
+        Profiler.finish();
+    }
+
+    private void roomLoaded() {
+        roomsLoaded.incrementAndGet();
+        //the active loop redraws the intro screen on its own
+        if (!activeLoop) {
+            repaint();
+        }
+    }
+
+    //waits until the game can start: the player, lives bar, fonts, and the rooms around where the player spawns
+    // (throws if they couldn't be loaded)
+    public void waitForStart() {
+        try {
+            essentials.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (loadFailure != null) {
+            throw new IllegalStateException("The game couldn't be loaded", loadFailure);
+        }
+        Room start = link.getOverWorld().getArea().get(1);
+        start.ensureBaked();
+        for (Room room : link.getOverWorld().getNeighbours(start)) {
+            room.ensureBaked();
+        }
+    }
+
+    //waits until everything has been loaded
+    public void waitUntilLoaded() {
+        try {
+            loader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        setFocusable(true);
+        requestFocus();
+    }
+
+    public void setActiveLoop(boolean newActiveLoop) {activeLoop = newActiveLoop;}
+    public BackgroundCache getBackgrounds() {return backgrounds;}
+    public DirtyRegion getDirtyRegion() {return dirty;}
+    public RenderQueue getRenderQueue() {return queue;}
+    public Player getPlayer() {return link;}
+
+    //goes straight to the game screen, as if a key was pressed on the intro screen
+    public synchronized void startGame() {
+        waitForStart();
+        screen = "game";
+        queueSprites();
+    }
+
+    //leaves the intro screen once a key was pressed and the game is ready (run by whichever of the two comes last)
+    private synchronized void beginGame() {
+        if (!screen.equals("intro")) {
+            return;
+        }
+        //the first frame of the game needs its sprites before the first tick has run
+        screen = "game";
+        queueSprites();
+        if (!activeLoop) {
+            time.start();
+            repaint();
+        }
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        render(g, getWidth(), getHeight());
+        if (SHOW_DIRTY) {
+            drawDirty(g);
+        }
+    }
+
+    //outlines the parts of the screen repainted this frame, with the share of pixels repainted in the corner
+    private synchronized void drawDirty(Graphics g) {
+        g.setColor(Color.MAGENTA);
+        for (Rectangle rect : dirty.getRegion()) {
+            g.drawRect(rect.x, rect.y, rect.width-1, rect.height-1);
+        }
+        if (retroType == null) {
+            return;
+        }
+        g.setFont(retroType.deriveFont(10f));
+        g.drawString(String.format("%.1f%% (avg %.1f%%)", dirty.getTouched()*100, dirty.getAverageTouched()*100), WIDTH-250, 20);
+    }
+
+    //draws the whole frame onto an area of the given size, used by both swing's painting and the active game loop
+    public void render(Graphics g, int width, int height) {
+        render(g, width, height, 1);
+    }
+
+    //draws a frame for the active game loop; when the graphics still hold the frame drawn before (kept), only
+    // the parts that changed since are drawn again
+    public synchronized void render(Graphics g, int width, int height, double blend, boolean kept) {
+        if (!partialRepaints()) {
+            render(g, width, height, blend);
+            return;
+        }
+        queue.setBlend(blend);
+        if (!kept) {
+            dirty.markAll();
+        }
+        markChanges();
+        Shape clip = g.getClip();
+        for (Rectangle rect : dirty.flush()) {
+            g.setClip(rect);
+            render(g, width, height, blend);
+        }
+        g.setClip(clip);
+        if (SHOW_DIRTY) {
+            drawDirty(g);
+        }
+    }
+
+    //the same, with everything that moves drawn a fraction (blend) of the way from where it was the tick
+    // before to where it is now (see RenderQueue.setBlend)
+    public synchronized void render(Graphics g, int width, int height, double blend) {
+        queue.setBlend(blend);
+        if (NATIVE_RENDERING) {
+            //the scene is still drawn in game coordinates, the graphics just shrink it down to native size
+            Graphics2D frameG = nativeFrame.createGraphics();
+            frameG.scale(1.0/Room.scaleFactor, 1.0/Room.scaleFactor);
+            frameG.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            drawScreen(frameG);
+            frameG.dispose();
+            drawNativeFrame(g, width, height);
+        }
+        else {
+            drawScreen(g);
+        }
+    }
+
+    //scales the native frame up (nearest neighbour) to fit the area, centred with black borders
+    private void drawNativeFrame(Graphics g, int width, int height) {
+        double scale = Math.min((double)width/nativeFrame.getWidth(), (double)height/nativeFrame.getHeight());
+        if (INTEGER_SCALING && scale >= 1) {
+            scale = Math.floor(scale);
+        }
+        int frameW = (int)(nativeFrame.getWidth()*scale);
+        int frameH = (int)(nativeFrame.getHeight()*scale);
+        int frameX = (width-frameW)/2;
+        int frameY = (height-frameH)/2;
+
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, frameX, height);
+        g.fillRect(frameX+frameW, 0, width-frameX-frameW, height);
+        g.fillRect(frameX, 0, frameW, frameY);
+        g.fillRect(frameX, frameY+frameH, frameW, height-frameY-frameH);
+        ((Graphics2D)g).setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g.drawImage(nativeFrame, frameX, frameY, frameW, frameH, null);
+    }
+
+    public void drawScreen(Graphics g) {
+        //below 3 ifs are to show specific images depending on the screen/game state
+        if (screen.equals("intro")) {
+            g.drawImage(introScreen,0,0,null);
+            if (loadFailure != null) {
+                g.setColor(Color.RED);
+                g.drawString("The game couldn't be loaded: " + loadFailure, 20, HEIGHT-20);
+            }
+            else if (!loaded) {
+                drawProgress(g);
+            }
+        }
+        if (screen.equals("gameover")) {
+            g.drawImage(gameOverScreen, 0,0, null);
+        }
+        if (screen.equals("win")) {
+            g.setColor(Color.BLACK);
+            g.fillRect(0,0,WIDTH,HEIGHT);
+            g.drawImage(winScreen, 290, 300, null);
+            winFont.drawString(g, "YOU WIN!", 270, 150);
+        }
+        if (screen.equals("game") && software != null) {
+            //same as below, but everything is put together in the software renderer's frame first
+            software.drawOpaque((BufferedImage)link.getRoom().getBackground(),0,150,256*Room.scaleFactor,176*Room.scaleFactor);
+            software.draw(queue);
+            software.drawOpaque(hud.getLayer(link.getHealth()),0,0,WIDTH,Hud.HEIGHT);
+            g.drawImage(software.getFrame(), 0, 0, null);
+        }
+        else if (screen.equals("game")) {
+            //draws the room the player is in
+            //(drawn at its size in game coordinates, which is its own size unless it was baked at native resolution)
+            backgrounds.draw(g, link.getRoom().getBackground(),0,150,256*Room.scaleFactor,176*Room.scaleFactor);
+            //draws every sprite queued up in the last tick
+            queue.flush(g);
+
+            //draws the black box with the player's hearts on top of screen
+            hud.draw(g, link.getHealth());
+        }
+    }
+    
+    //a loading bar along the bottom of the intro screen (the player and fonts count as one step, then each room)
+    private void drawProgress(Graphics g) {
+        int steps = roomsToLoad + 1;
+        int done = essentials.getCount() == 0 ? roomsLoaded.get() + 1 : 0;
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(184, HEIGHT-30, 400, 8);
+        g.setColor(Color.WHITE);
+        g.fillRect(184, HEIGHT-30, roomsToLoad == 0 ? 0 : 400*done/steps, 8);
+    }
+
+    //queues up the sprites of everything in the player's room, in the order they are drawn
+    public void queueSprites() {
+        boolean newRoom = link.getRoom() != queuedRoom;
+        if (newRoom) {
+            queue.forgetImages();
+            queuedRoom = link.getRoom();
+        }
+        queue.clear();
+        if (newRoom) {
+            queue.holdStill();
+        }
+        //draws player
+        link.draw(queue);
+        //draws the enemies of the room the player is in
+        link.getRoom().drawEnemies(queue);
+        //draws the room's heart (if the room has one)
+        link.getRoom().drawHeart(queue);
+        //draws the boss in the boss room as long as the boss is alive
+        if (link.getRoom() == link.getDungeon().getArea().get(6) && link.getDungeon().getBoss().getHealth() > 0) { // change to 6
+            link.getDungeon().getBoss().draw(queue);
+        }
+        //draws the sword laser power up in the all-black room if the player hasn't picked the power up yet
+        if (link.getRoom() == link.getDungeon().getArea().get(4) && !link.getCanShoot()) {
+            link.getDungeon().getPlayerLaser().draw(queue);
+        }
+        //draws the triforce in the final room (room after boss)
+        if (link.getRoom() == link.getDungeon().getArea().get(7)) {
+            link.getDungeon().getTriforce().draw(queue);
+        }
+        queue.sort();
+    }
+
+    public void update() {
+        if (screen.equals("game")) {
+            //moves player
+            link.move(keys);
+            //moves enemies in the player's current room
+            link.getRoom().moveEnemies();
+            //kills enemies if conditions are met in the player's current room
+            link.getRoom().killEnemies();
+            //updates the heart of the player's current room
+            link.getRoom().updateHeart();
+            //allows boss to function in the boss room
+            if (link.getRoom() == link.getDungeon().getArea().get(6) && link.getDungeon().getBoss().getHealth() > 0) { // change to 6
+                link.getDungeon().getBoss().update();
+            }
+            //allows player to pick up the sword power up and plays a sound when they do
+            if (link.getRoom() == link.getDungeon().getArea().get(4)) {
+                if (link.getDungeon().getPlayerLaser().collideLaser(link) && link.getCanShoot() == false) {
+                    itemPickUp.play();
+                    link.setCanShoot(true);
+                }
+            }
+            //allows player to pick up the triforce and ends the game on a win if they do
+            //music stops and a sound is played if picked up
+            if (link.getRoom() == link.getDungeon().getArea().get(7)) {
+                if (link.getDungeon().getTriforce().collideTriforce(link)) {
+                    screen = "win";
+                    if (overWorldMusic != null) {overWorldMusic.stop();}
+                    Sound triforcePickUp = new Sound("Resources/Sound/LOZ_Win_Game.wav");
+                    triforcePickUp.play();
+                }
+            }
+            //ends the game on a game over if player health runs out
+            //music stops and plays a sound if health drops to 0
+            if (link.getHealth() == 0) {
+                screen = "gameover";
+                if (overWorldMusic != null) {overWorldMusic.stop();}
+                Sound death = new Sound("Resources/Sound/LOZ_Link_Die.wav");
+                death.play();
+            }
+        }
+    }
+    //one step of the game, run by the timer or the active game loop
+    public synchronized void tick() {
+        //edited rooms are swapped in between ticks, so a tick never sees a room half replaced
+        if (hotReload != null) {
+            for (Image old : hotReload.apply()) {
+                backgrounds.release(old);
+                lastRoom = null;            //repaints the whole screen
+            }
+        }
+        if (screen.equals("game")) {
+            update();
+            queueSprites();
+        }
+    }
+
+    //main game loop (timer fallback)
+    public void actionPerformed(ActionEvent e) {
+        tick();
+        if (partialRepaints()) {
+            repaintDirty();
+        }
+        else {
+            repaint();
+        }
+    }
+
+    //the native and software frames are put together whole every time, so only frames drawn straight onto
+    // the screen can be partially repainted
+    private boolean partialRepaints() {
+        return DIRTY_RECTS && !NATIVE_RENDERING && software == null;
+    }
+
+    //repaints only where things were drawn last frame and where they are drawn now
+    //each area is painted right away (the timer runs this on swing's event thread): swing's own repaint
+    // would join every area into one box around all of them, repainting far more of the screen than the
+    // areas add up to, and than the share of pixels repainted says
+    public synchronized void repaintDirty() {
+        markChanges();
+        for (Rectangle rect : dirty.flush()) {
+            paintImmediately(rect);
+        }
+    }
+
+    //marks where things are drawn this frame, or the whole screen if the screen or room changed
+    private void markChanges() {
+        if (!screen.equals("game") || !screen.equals(lastScreen) || link.getRoom() != lastRoom) {
+            dirty.markAll();
+        }
+        //the sprites are marked even when everything is repainted, so the next frame knows to erase them
+        if (screen.equals("game")) {
+            queue.markDirty(dirty);
+            //the hearts on top of the screen only change with the player's health
+            if (link.getHealth() != lastHealth) {
+                dirty.mark(0, 0, WIDTH, Hud.HEIGHT);
+            }
+        }
+        if (SHOW_DIRTY) {
+            dirty.mark(WIDTH-250, 0, 250, 25);
+        }
+        lastScreen = screen;
+        lastRoom = link == null ? null : link.getRoom();
+        lastHealth = link == null ? 0 : link.getHealth();
+    }
+
+    //starts the game after any key is pressed
+    //makes sure the attack event happens only once even when key is held down
+    public void keyPressed(KeyEvent e) {
+        //the first key only asks for the game to start; the loader starts it once the rooms around the player
+        // are baked (or right away if they already are), so this never waits and the loading bar keeps moving
+        if (screen.equals("intro")) {
+            startRequested = true;
+            if (startReady) {
+                beginGame();
+            }
+        }
+        synchronized (this) {
+            if (screen.equals("game") && e.getKeyCode() == KeyEvent.VK_J && !keys[KeyEvent.VK_J]) {
+                link.setCanAttack(true);
+                link.getLaser().setShotMade(true);
+            }
+            keys[e.getKeyCode()] = true; 
+        }
+    }
+    public synchronized void keyReleased(KeyEvent e) {
+        keys[e.getKeyCode()] = false;
+    }
+    public void keyTyped(KeyEvent e) {}   
+}
\ No newline at end of file
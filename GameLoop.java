@@ -0,0 +1,127 @@
+/**
+ * GameLoop.java
+ * Active rendering loop; runs the game on its own thread instead of a swing timer
+ * The game is updated on a fixed timestep (the same 20ms tick the timer used), while
+ * frames are drawn into the page-flipped buffers of a canvas at their own pace (60 a second)
+ * Frames fall between ticks, so each one shows everything moving part of the way from the tick
+ * before to the last tick, by how much of the next tick has gone by; otherwise every sixth
+ * frame would show the same tick again and motion would judder
+ * When the back buffer still holds the frame drawn before (a blitted rather than flipped buffer, or
+ * one whose flips copy), only the parts of the screen that changed are drawn into it (see DirtyRegion)
+ */
+
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+
+class GameLoop implements Runnable {
+    public static final long TICK = 20_000_000L;                //nanoseconds between updates
+    public static final long FRAME = 1_000_000_000L / 60;       //nanoseconds between frames
+    public static final int MAX_CATCH_UP = 5;                   //most ticks run back to back before falling behind on purpose
+
+    private GPanel game;
+    private Canvas canvas;
+    private Thread thread;
+    private volatile boolean running;
+    private boolean kept;                   //the back buffer still holds the last frame drawn
+    private int keptWidth, keptHeight;      //the size it was drawn at
+
+    public GameLoop(GPanel game) {
+        this.game = game;
+
+        canvas = new Canvas();
+        canvas.setPreferredSize(new Dimension(GPanel.WIDTH, GPanel.HEIGHT));
+        //the canvas is painted by the loop only, so swing/awt should never clear it
+        canvas.setIgnoreRepaint(true);
+        canvas.setFocusable(true);
+        canvas.addKeyListener(game);
+    }
+
+    public Canvas getCanvas() {return canvas;}
+
+    public void start() {
+        running = true;
+        thread = new Thread(this, "game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    public void run() {
+        BufferStrategy strategy = canvas.getBufferStrategy();
+        long previous = System.nanoTime();
+        long nextFrame = previous;
+        long lag = 0;
+
+        while (running) {
+            long now = System.nanoTime();
+            lag += now - previous;
+            previous = now;
+
+            //runs as many fixed ticks as time has passed, but if the loop falls far behind
+            // (window dragged, machine asleep) the extra time is dropped instead of fast-forwarding
+            if (lag > TICK*MAX_CATCH_UP) {
+                lag = TICK*MAX_CATCH_UP;
+            }
+            while (lag >= TICK) {
+                game.tick();
+                lag -= TICK;
+            }
+
+            if (now >= nextFrame) {
+                render(strategy, (double)lag/TICK);
+                nextFrame += FRAME;
+                if (nextFrame < now) {
+                    nextFrame = now + FRAME;
+                }
+            }
+
+            //sleeps until whichever comes first, the next tick or the next frame
+            long wake = Math.min(now + TICK - lag, nextFrame);
+            long sleep = wake - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep / 1_000_000L, (int)(sleep % 1_000_000L));
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+            }
+        }
+    }
+
+    //draws a frame into the back buffer and flips it, redrawing if the buffer's contents were lost
+    private void render(BufferStrategy strategy, double blend) {
+        BufferCapabilities capabilities = strategy.getCapabilities();
+        boolean keeps = !capabilities.isPageFlipping() || capabilities.getFlipContents() == BufferCapabilities.FlipContents.COPIED;
+        int width = canvas.getWidth(), height = canvas.getHeight();
+        if (width != keptWidth || height != keptHeight) {
+            kept = false;
+            keptWidth = width;
+            keptHeight = height;
+        }
+        boolean lost;
+        do {
+            boolean restored;
+            do {
+                Graphics g = strategy.getDrawGraphics();
+                try {
+                    game.render(g, width, height, blend, kept);
+                } finally {
+                    g.dispose();
+                }
+                //a restored buffer lost what was in it, so it is drawn again whole
+                restored = strategy.contentsRestored();
+                kept = keeps && !restored;
+            } while (restored);
+            strategy.show();
+            lost = strategy.contentsLost();
+            if (lost) {
+                kept = false;
+            }
+        } while (lost);
+        //flushes the frame to the screen right away on platforms that queue drawing (linux)
+        Toolkit.getDefaultToolkit().sync();
+    }
+}
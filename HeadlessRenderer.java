@@ -0,0 +1,365 @@
+/**
+ * HeadlessRenderer.java
+ * Renders fixed game scenes into offscreen images with no window, keyboard or sound,
+ * so drawing can be checked and timed on a machine without a display
+ * Usage: java HeadlessRenderer [check|record|bench|alloc] [scene...]
+ * - record: saves each scene as the golden image in Resources/Golden
+ * - check:  compares each scene against its golden image, saving the actual frame next to it if they differ
+ * - bench:  draws each scene over and over and prints the frames per second
+ * - alloc:  plays each scene (walking back and forth, swinging the sword, and hitting an enemy with the
+ *           sword and with a sword shot) and fails if moving and colliding allocates anything once it has warmed up
+ * The render flags (-Dzelda.native, -Dzelda.renderer=software, ...) apply just like in the game
+ */
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.event.KeyEvent;
+import java.io.*;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+
+class HeadlessRenderer {
+    public static final String GOLDEN_DIR = "Resources/Golden";
+    public static final String[] SCENES = {"start", "boss", "enemies", "tiers"};
+    public static final int WARMUP_FRAMES = 200;
+    public static final int BENCH_FRAMES = 2000;
+    public static final int ALLOC_WARMUP_TICKS = 20000;
+    public static final int ALLOC_TICKS = 5000;
+    public static final int ALLOC_ROUNDS = 3;               //rounds that have to allocate nothing
+    public static final int ALLOC_MAX_ROUNDS = 100;         //most rounds played before giving up on the JIT settling
+    public static final int ALLOC_PAUSE = 50;               //ms the JIT gets to itself at a time after each round
+    public static final long ALLOC_IDLE = 5_000_000;        //ns of CPU the process can use in a pause and still count as idle
+    public static final int[] WALK_KEYS = {KeyEvent.VK_W, KeyEvent.VK_D, KeyEvent.VK_S, KeyEvent.VK_A};
+    public static final int STRIKE_TICKS = 200;             //every so often the player stops to hit a target enemy:
+    public static final int SWORD_TICK = 120, SHOT_TICK = 160;  // with the sword, then with a sword shot
+    public static final int SHOT_GAP = 100;                 //how far away the target is put for the shot (out of the sword's reach)
+
+    private GPanel game;
+    private BufferedImage frame;
+    private boolean spawned;        //the extra enemies of the "enemies" scene have been added
+    private boolean tiered;         //the enemies of the "tiers" scene have been added
+    private int swordHits, shotHits;    //times the target was hit while playing
+    private int shotWay;                //the way the player turns to shoot (see openWay)
+
+    public HeadlessRenderer() {
+        game = new GPanel();
+        game.waitUntilLoaded();
+        frame = new BufferedImage(GPanel.WIDTH, GPanel.HEIGHT, BufferedImage.TYPE_INT_RGB);
+    }
+
+    //puts the game in one of the fixed scenes, nothing random is drawn in any of them
+    public void setScene(String scene) {
+        Player link = game.getPlayer();
+        switch (scene) {
+            //where the player spawns in the overworld
+            case "start":
+            link.setState("overworld");
+            link.setRoom(link.getOverWorld().getArea().get(1));
+            link.setX(140);
+            link.setY(400);
+            break;
+            //the boss room, with the boss' first volley of fireballs (and no heart, which is random)
+            case "boss":
+            link.setState("dungeon");
+            link.setRoom(link.getDungeon().getArea().get(6));
+            link.getRoom().setHeartChance(0);
+            link.setX(150);
+            link.setY(350);
+            break;
+            //a dungeon room of ropes, with a stalfos and a wizzrobe added so every type of enemy is in it
+            case "enemies":
+            link.setState("dungeon");
+            link.setRoom(link.getDungeon().getArea().get(13));
+            if (!spawned) {
+                link.getRoom().addEnemy("Stalfos", 624, 390);
+                link.getRoom().addEnemy("Wizzrobe", 336, 342);
+                spawned = true;
+            }
+            link.setX(350);
+            link.setY(500);
+            break;
+            //an empty dungeon room with every palette variant: each type in its three tiers,
+            // plus a stalfos in the middle of its damage flash and one blinked out
+            case "tiers":
+            link.setState("dungeon");
+            link.setRoom(link.getDungeon().getArea().get(7));
+            if (!tiered) {
+                String[] types = {"Stalfos", "Rope", "Wizzrobe"};
+                for (int t = 0; t < types.length; t++) {
+                    for (int tier = 0; tier < 3; tier++) {
+                        link.getRoom().addEnemy(types[t], 200 + tier*120, 250 + t*90).setTier(tier);
+                    }
+                }
+                link.getRoom().addEnemy("Stalfos", 560, 250).setIFrames(3);
+                link.getRoom().addEnemy("Stalfos", 560, 340).setIFrames(1);
+                tiered = true;
+            }
+            link.setX(350);
+            link.setY(500);
+            break;
+            default:
+            throw new IllegalArgumentException("Unknown scene: " + scene);
+        }
+        game.startGame();
+    }
+
+    public BufferedImage render() {
+        Graphics g = frame.getGraphics();
+        game.render(g, GPanel.WIDTH, GPanel.HEIGHT);
+        g.dispose();
+        return frame;
+    }
+
+    public void record(String scene) throws IOException {
+        setScene(scene);
+        new File(GOLDEN_DIR).mkdirs();
+        ImageIO.write(render(), "png", new File(GOLDEN_DIR, scene + ".png"));
+        System.out.println("recorded " + scene);
+    }
+
+    //returns true if the scene matches its golden image exactly
+    public boolean check(String scene) throws IOException {
+        File golden = new File(GOLDEN_DIR, scene + ".png");
+        if (!golden.exists()) {
+            System.out.println("FAIL " + scene + ": no golden image at " + golden);
+            return false;
+        }
+        setScene(scene);
+        BufferedImage actual = render();
+        BufferedImage expected = ImageIO.read(golden);
+        if (expected.getWidth() != actual.getWidth() || expected.getHeight() != actual.getHeight()) {
+            System.out.println("FAIL " + scene + ": golden image is " + expected.getWidth() + "x" + expected.getHeight());
+            return false;
+        }
+
+        int different = 0;
+        for (int y = 0; y < actual.getHeight(); y++) {
+            for (int x = 0; x < actual.getWidth(); x++) {
+                if ((actual.getRGB(x, y) & 0xffffff) != (expected.getRGB(x, y) & 0xffffff)) {
+                    different++;
+                }
+            }
+        }
+        if (different > 0) {
+            File saved = new File(GOLDEN_DIR, scene + "-actual.png");
+            ImageIO.write(actual, "png", saved);
+            System.out.println("FAIL " + scene + ": " + different + " pixels differ (frame saved to " + saved + ")");
+            return false;
+        }
+        System.out.println("ok   " + scene);
+        return true;
+    }
+
+    //draws the scene over and over (the scene itself doesn't change) and prints how many frames a second were drawn
+    public void bench(String scene) {
+        setScene(scene);
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            render();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCH_FRAMES; i++) {
+            render();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-8s %8.1f fps  %6.3f ms/frame%n", scene, BENCH_FRAMES/seconds, seconds*1000/BENCH_FRAMES);
+    }
+
+    //one tick of play: the player walks a square (up, right, down, left) from x,y and swings every so often,
+    // or stands still to hit the target; then everything in the room moves, collides and is drawn like in GPanel.tick
+    private void play(int tick, boolean[] keys, int x, int y, Enemy target) {
+        Player link = game.getPlayer();
+        int strike = tick%STRIKE_TICKS;
+        //back to the start of the square each time round (and kept there while standing still), so being knocked
+        // back never walks or pushes the player out of the room
+        if (tick%40 == 0 || strike > SWORD_TICK) {
+            link.setX(x);
+            link.setY(y);
+        }
+        Arrays.fill(keys, false);
+        if (strike < SWORD_TICK) {
+            keys[WALK_KEYS[(tick/10)%4]] = true;
+            if (tick%25 == 0) {
+                link.setCanAttack(true);
+            }
+        }
+        else if (strike == SWORD_TICK) {
+            aim(target, 4);
+            link.setCanAttack(true);
+        }
+        else if (strike == SHOT_TICK-1) {
+            keys[WALK_KEYS[shotWay]] = true;
+        }
+        else if (strike == SHOT_TICK) {
+            aim(target, SHOT_GAP);
+            link.setCanShoot(true);
+            link.getLaser().setShotMade(true);
+        }
+        int health = target.getHealth();
+        link.move(keys);
+        link.getRoom().moveEnemies();
+        link.getRoom().killEnemies();
+        link.getRoom().updateHeart();
+        if (link.getRoom() == link.getDungeon().getArea().get(6)) {
+            link.getDungeon().getBoss().update();
+        }
+        //the sword's hitbox is worked out as the player is drawn
+        game.queueSprites();
+        if (target.getHealth() < health) {
+            if (strike >= SHOT_TICK) {
+                shotHits++;
+            }
+            else if (strike >= SWORD_TICK) {
+                swordHits++;
+            }
+        }
+    }
+
+    //plays the ticks from tick on up to (not including) end, a strike at a time: the loop that counts up the ticks
+    // is then a method compiled while warming up, instead of one the JIT swaps in part way through a measured round
+    // (which allocates)
+    private void play(int tick, int end, boolean[] keys, int x, int y, Enemy target) {
+        while (tick < end) {
+            tick = strike(tick, keys, x, y, target);
+        }
+    }
+
+    private int strike(int tick, boolean[] keys, int x, int y, Enemy target) {
+        for (int end = tick + STRIKE_TICKS; tick < end; tick++) {
+            play(tick, keys, x, y, target);
+        }
+        return tick;
+    }
+
+    //puts the target gap pixels in front of the player, in the way they face, with health to spare
+    private void aim(Enemy target, int gap) {
+        Player link = game.getPlayer();
+        int x = link.getX(), y = link.getY();
+        if (link.getDir() == link.UP) {
+            y -= target.getHeight() + gap;
+        }
+        else if (link.getDir() == link.RIGHT) {
+            x += link.getWidth() + gap;
+        }
+        else if (link.getDir() == link.DOWN) {
+            y += link.getHeight() + gap;
+        }
+        else {
+            x -= target.getWidth() + gap;
+        }
+        target.setX(x);
+        target.setY(y);
+        target.setHealth(1000);
+        target.setIFrames(0);
+    }
+
+    //which way (UP, RIGHT, DOWN or LEFT, the order of WALK_KEYS) a shot from where the player stands can fly
+    // past the target without being stopped by a wall or block, or LEFT if there isn't one
+    private int openWay(Player link, Enemy target) {
+        Room room = link.getRoom();
+        Rectangle box = new Rectangle(link.getX(), link.getY(), link.getWidth(), link.getHeight());
+        int reach = SHOT_GAP + Math.max(target.getWidth(), target.getHeight());
+        for (int way = link.UP; way <= link.LEFT; way++) {
+            int dx = way == link.RIGHT ? reach : way == link.LEFT ? -reach : 0;
+            int dy = way == link.DOWN ? reach : way == link.UP ? -reach : 0;
+            boolean walled = link.getState().equals("dungeon") && room.getBorderGrid().sweep(box, dx, dy) != Sweep.MISS;
+            if (!walled && room.getSquareGrid().sweep(box, dx, dy) == Sweep.MISS) {
+                return way;
+            }
+        }
+        return link.LEFT;
+    }
+
+    //plays the scene until it is warmed up, then returns true if playing it some more allocated nothing in
+    // every one of a few rounds, each of which hits the target with both the sword and a sword shot
+    //only rounds the JIT compiled nothing in are counted (the others are played again): the first time it
+    // compiles a method of a class it makes that class's strings on this thread, and code it has recompiled is
+    // swapped in part way through loops, both of which allocate even though the game doesn't
+    //after each round it is given pauses to compile in until it is done, or with one CPU it can be kept waiting for
+    // a long time and finish something started in a round only after it is counted
+    public boolean alloc(String scene) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        com.sun.management.OperatingSystemMXBean os = (com.sun.management.OperatingSystemMXBean)ManagementFactory.getOperatingSystemMXBean();
+        setScene(scene);
+        Player link = game.getPlayer();
+        int x = link.getX(), y = link.getY();
+        Enemy target = link.getRoom().addEnemy("Stalfos", x, y);
+        target.setHealth(1000);            //so the sword swung while walking can't kill it before it is aimed at
+        shotWay = openWay(link, target);
+        boolean[] keys = new boolean[KeyEvent.KEY_LAST+1];
+        play(0, ALLOC_WARMUP_TICKS, keys, x, y, target);
+        int tick = ALLOC_WARMUP_TICKS;
+        boolean passed = true;
+        int counted = 0, played = 0;
+        while (counted < ALLOC_ROUNDS && played < ALLOC_MAX_ROUNDS) {
+            swordHits = shotHits = 0;
+            long compiling = jit.getTotalCompilationTime();
+            long before = threads.getCurrentThreadAllocatedBytes();
+            play(tick, tick + ALLOC_TICKS, keys, x, y, target);
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+            tick += ALLOC_TICKS;
+            played++;
+            //waits for the JIT to finish whatever the round started: this thread is asleep, so until then the process is busy
+            try {
+                long busy;
+                do {
+                    busy = os.getProcessCpuTime();
+                    Thread.sleep(ALLOC_PAUSE);
+                } while (os.getProcessCpuTime() - busy > ALLOC_IDLE);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (jit.getTotalCompilationTime() != compiling) {
+                continue;
+            }
+            counted++;
+            if (allocated > 0) {
+                System.out.printf("FAIL %s: %d bytes allocated in %d ticks (%.1f a tick)%n", scene, allocated, ALLOC_TICKS, (double)allocated/ALLOC_TICKS);
+                passed = false;
+            }
+            if (swordHits == 0 || shotHits == 0) {
+                System.out.println("FAIL " + scene + ": the target was hit " + swordHits + " times by the sword and " + shotHits + " by shots");
+                passed = false;
+            }
+        }
+        if (counted < ALLOC_ROUNDS) {
+            System.out.println("FAIL " + scene + ": the JIT was still compiling after " + played + " rounds");
+            passed = false;
+        }
+        if (passed) {
+            System.out.println("ok   " + scene + ": nothing allocated in " + ALLOC_ROUNDS + "x" + ALLOC_TICKS + " ticks, with " + swordHits + " sword and " + shotHits + " shot hits in the last");
+        }
+        return passed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        Sound.muted = true;
+
+        String mode = args.length > 0 ? args[0] : "check";
+        String[] scenes = SCENES;
+        if (args.length > 1) {
+            scenes = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        HeadlessRenderer renderer = new HeadlessRenderer();
+        boolean passed = true;
+        if (mode.equals("bench")) {
+            System.out.println("renderer: " + (SoftwareRenderer.ENABLED ? "software" : "java2d") + (GPanel.NATIVE_RENDERING ? ", native resolution" : ""));
+        }
+        for (String scene : scenes) {
+            switch (mode) {
+                case "record": renderer.record(scene); break;
+                case "check": passed &= renderer.check(scene); break;
+                case "bench": renderer.bench(scene); break;
+                case "alloc": passed &= renderer.alloc(scene); break;
+                default:
+                System.out.println("Usage: java HeadlessRenderer [check|record|bench|alloc] [scene...]");
+                System.exit(2);
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+}
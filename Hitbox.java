@@ -0,0 +1,42 @@
+/**
+ * Hitbox.java
+ * Where something can be hit: a rectangle, and with pixel collision on (see SpriteMask) the mask
+ * of the sprite drawn there
+ * Each character keeps its own hitbox and moves it to where it is before handing it out, so
+ * checking hits doesn't make a new rectangle every time
+ */
+
+import java.awt.Rectangle;
+
+class Hitbox {
+    private Rectangle rect = new Rectangle();
+    private SpriteMask mask;            //null tests the rectangle only
+    private int maskX, maskY;           //where the sprite of the mask is drawn
+
+    public Rectangle getRect() {return rect;}
+    public SpriteMask getMask() {return mask;}
+
+    //puts the hitbox at a rectangle, with the mask of the sprite drawn at maskX,maskY
+    public Hitbox set(int x, int y, int width, int height, SpriteMask mask, int maskX, int maskY) {
+        rect.setBounds(x, y, width, height);
+        this.mask = mask;
+        this.maskX = maskX;
+        this.maskY = maskY;
+        return this;
+    }
+
+    //the rectangles have to overlap, and with masks on both sides a solid pixel of each has to be
+    // in the same place inside that overlap
+    public boolean touches(Hitbox other) {
+        if (!rect.intersects(other.rect)) {
+            return false;
+        }
+        if (mask == null || other.mask == null) {
+            return true;
+        }
+        return mask.overlaps(maskX, maskY, other.mask, other.maskX, other.maskY,
+                             Math.max(rect.x, other.rect.x), Math.max(rect.y, other.rect.y),
+                             Math.min(rect.x + rect.width, other.rect.x + other.rect.width),
+                             Math.min(rect.y + rect.height, other.rect.y + other.rect.height));
+    }
+}
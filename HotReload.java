@@ -0,0 +1,123 @@
+/**
+ * HotReload.java
+ * Development mode (-Dzelda.hotReload=true) that watches the room layout files, pixel maps and tiles while
+ * the game runs, and re-bakes just the rooms whose files changed
+ * Tiles are read from their own files once they change, even if they are packed in the atlas (see SpriteAtlas)
+ * Rooms are re-baked on the watcher's thread into a separate copy, which the game thread then swaps
+ * in between two ticks, so a room is never seen half rebuilt
+ * Only the background and walls are replaced: the player stays where they are, and the room keeps its
+ * enemies and heart
+ */
+
+import java.awt.Image;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+class HotReload implements Runnable {
+    public static final boolean ENABLED = Boolean.getBoolean("zelda.hotReload");
+    public static final String[] FOLDERS = {"Resources/Dungeon/RoomTextFiles", "Resources/Dungeon/RoomLayouts",
+                                            "Resources/OverWorld/OverWorldTextFiles", "Resources/OverWorld/RegionLayouts",
+                                            "Resources/Dungeon/DungeonTileSet", "Resources/OverWorld/OWTileSet"};
+    public static final long SETTLE = 100;              //milliseconds to wait for more changes after one comes in (editors save in steps)
+
+    //a re-baked copy of a room waiting to be swapped in
+    private static class Reload {
+        Room room, fresh;
+        long started;
+    }
+
+    private List<Room> rooms;
+    private WatchService watcher;
+    private ConcurrentLinkedQueue<Reload> ready;
+
+    public HotReload(List<Room> rooms) {
+        this.rooms = rooms;
+        ready = new ConcurrentLinkedQueue<Reload>();
+    }
+
+    public void start() {
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            for (String folder : FOLDERS) {
+                Paths.get(folder).register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        Thread thread = new Thread(this, "hot-reload");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("Watching room files for changes");
+    }
+
+    public void run() {
+        while (true) {
+            LinkedHashSet<String> changed = new LinkedHashSet<String>();
+            try {
+                WatchKey key = watcher.take();
+                //gathers every change saved close together into one reload
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() != StandardWatchEventKinds.OVERFLOW) {
+                            changed.add(((Path)key.watchable()).resolve((Path)event.context()).toString());
+                        }
+                    }
+                    key.reset();
+                    key = watcher.poll(SETTLE, TimeUnit.MILLISECONDS);
+                }
+            }
+            catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            //changed tiles are loaded again rather than shared from before
+            for (String path : changed) {
+                AssetManager.changed(path);
+            }
+            for (Room room : rooms) {
+                //rooms that were never baked will just be baked from the new files when they are entered
+                if (!room.isBaked()) {
+                    continue;
+                }
+                for (String path : changed) {
+                    if (room.dependsOn(path)) {
+                        Reload reload = new Reload();
+                        reload.started = System.nanoTime();
+                        reload.room = room;
+                        try {
+                            reload.fresh = room.rebake();
+                            ready.add(reload);
+                        }
+                        catch (RuntimeException e) {
+                            //a half-edited file can't be read yet, the next save tries again
+                            System.out.println("Couldn't reload " + room.layoutFile() + ": " + e);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    //swaps the re-baked rooms in, called by the game thread between ticks; returns the backgrounds that were replaced
+    public List<Image> apply() {
+        ArrayList<Image> replaced = new ArrayList<Image>();
+        Reload reload;
+        while ((reload = ready.poll()) != null) {
+            Image old = reload.room.adopt(reload.fresh);
+            if (old != null) {
+                replaced.add(old);
+            }
+            RoomLoader.baked(reload.room);
+            System.out.printf("Reloaded %s in %.1f ms%n", reload.room.layoutFile(), (System.nanoTime()-reload.started)/1e6);
+        }
+        return replaced;
+    }
+}
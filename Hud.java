@@ -0,0 +1,50 @@
+/**
+ * Hud.java
+ * The black bar on top of the game screen showing the player's lives
+ * It is kept as one picture that is only redrawn when what it shows changes
+ * (the player's health), so each frame it costs a single copy
+ */
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+class Hud {
+    public static final int HEIGHT = 150;       //the bar spans the whole width of the screen
+
+    private BufferedImage layer;
+    private BitmapFont font;
+    private Image heartPic;
+    private int shownHealth;                    //health the layer was last drawn with
+
+    public Hud(BitmapFont font, Image heartPic) {
+        this.font = font;
+        this.heartPic = heartPic;
+        layer = new BufferedImage(GPanel.WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        shownHealth = -1;
+    }
+
+    public void draw(Graphics g, int health) {
+        g.drawImage(getLayer(health), 0, 0, null);
+    }
+
+    //the bar as it looks with the given health
+    public BufferedImage getLayer(int health) {
+        if (health != shownHealth) {
+            rebuild(health);
+        }
+        return layer;
+    }
+
+    //draws hearts on the top of the screen depending on the health of the player
+    private void rebuild(int health) {
+        Graphics g = layer.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, GPanel.WIDTH, HEIGHT);
+        font.drawString(g, "-LIVES-", 0, 40);
+        for (int i = 0; i < health; i++) {
+            g.drawImage(heartPic, 50*i, 70, null);
+        }
+        g.dispose();
+        shownHealth = health;
+    }
+}
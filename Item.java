@@ -9,12 +9,12 @@
  */
 
 import java.awt.*;
-import javax.swing.ImageIcon;
 
 class Item {
   private int itemX, itemY;
   private String type;        //the type of item
   private Image itemPic;      //the picture of the item
+  private Rectangle bounds;   //items never move, so this is made once
   
   public Item(int x, int y, String type) {
     itemX = x;
@@ -23,20 +23,21 @@ class Item {
 
     //chooses an image for the item depending on type
     if (type.equals("heart")) {
-      itemPic = new ImageIcon("Resources/Link/itemHeart.png").getImage();
+      itemPic = AssetManager.acquire("Resources/Link/itemHeart.png");
     }
     else if (type.equals("laser")) {
-      itemPic = new ImageIcon("Resources/Link/SwordShot/UpShot.png").getImage();
+      itemPic = AssetManager.acquire("Resources/Link/SwordShot/UpShot.png");
     }
     else if (type.equals("triforce")) {
-      itemPic = new ImageIcon("Resources/Link/triforce.png").getImage();
+      itemPic = AssetManager.acquire("Resources/Link/triforce.png");
     }
+    bounds = new Rectangle(itemX, itemY, itemPic.getWidth(null), itemPic.getHeight(null));
   }
   
-  public Rectangle getRect() {return new Rectangle(itemX, itemY, itemPic.getWidth(null), itemPic.getHeight(null));}
+  public Rectangle getRect() {return bounds;}
 
-  public void draw(Graphics g) {
-    g.drawImage(itemPic, itemX, itemY, null);
+  public void draw(RenderQueue queue) {
+    queue.add(RenderQueue.LAYER_GROUND, itemPic, itemX, itemY);
   }
   
   //checks for collision for each possible item type
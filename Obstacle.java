@@ -8,7 +8,10 @@ class Obstacle {
          
     }
 
-    public void collide(Player player) {
+    public Rectangle getRect() {return sRect;}
+
+    //pushes the player back out if they walked into the obstacle, and says whether they did
+    public boolean collide(Player player) {
         if (sRect.intersects(player.getRect())) {
             if (player.getDir() == player.UP) {
                 player.setY(player.getY()+player.getDY());
@@ -22,10 +25,12 @@ class Obstacle {
             if (player.getDir() == player.LEFT) {
                 player.setX(player.getX()+player.getDX());
             }
+            return true;
         }
+        return false;
     }
 
-    public void collide(Enemy enemy) {
+    public boolean collide(Enemy enemy) {
         if (sRect.intersects(enemy.getRect())) {
             if (enemy.getDir() == enemy.UP) {
                 enemy.setY(enemy.getY()+enemy.getDY());
@@ -39,6 +44,8 @@ class Obstacle {
             if (enemy.getDir() == enemy.LEFT) {
                 enemy.setX(enemy.getX()+enemy.getDX());
             }
+            return true;
         }
+        return false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+/**
+ * ObstacleCheck.java
+ * Checks the blocks rooms collide with (see TileMerger) on random tile maps, with no window or game
+ * A map passes when every pixel is covered by exactly as many blocks as it should be: one if it is in a
+ * blocked tile and not within the slack of a side facing a walkable tile (or the edge of the map), none otherwise
+ * Usage: java ObstacleCheck [maps]
+ */
+
+import java.awt.Rectangle;
+import java.util.Random;
+
+class ObstacleCheck {
+    public static final int MAPS = 20000;
+    public static final int TILE = 6, INSET = 2;     //small tiles, so every pixel can be checked
+
+    //how many pixels of a random map are covered wrongly
+    private static int check(Random random) {
+        int width = 1 + random.nextInt(16), height = 1 + random.nextInt(11);
+        boolean[][] blocked = new boolean[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                blocked[x][y] = random.nextInt(3) > 0;
+            }
+        }
+        int[][] covered = new int[width*TILE][height*TILE];
+        for (Rectangle rect : TileMerger.blocks(blocked, 0, 0, TILE, TILE, INSET)) {
+            for (int x = rect.x; x < rect.x + rect.width; x++) {
+                for (int y = rect.y; y < rect.y + rect.height; y++) {
+                    covered[x][y]++;
+                }
+            }
+        }
+        int wrong = 0;
+        for (int x = 0; x < width*TILE; x++) {
+            for (int y = 0; y < height*TILE; y++) {
+                int tileX = x/TILE, tileY = y/TILE;
+                int inX = x%TILE, inY = y%TILE;
+                boolean solid = blocked[tileX][tileY] &&
+                                !(inX < INSET && TileMerger.open(blocked, tileX-1, tileY)) &&
+                                !(inX >= TILE-INSET && TileMerger.open(blocked, tileX+1, tileY)) &&
+                                !(inY < INSET && TileMerger.open(blocked, tileX, tileY-1)) &&
+                                !(inY >= TILE-INSET && TileMerger.open(blocked, tileX, tileY+1));
+                if (covered[x][y] != (solid ? 1 : 0)) {
+                    wrong++;
+                }
+            }
+        }
+        return wrong;
+    }
+
+    public static void main(String[] args) {
+        int maps = args.length > 0 ? Integer.parseInt(args[0]) : MAPS;
+        Random random = new Random(1);
+        int failed = 0;
+        for (int i = 0; i < maps; i++) {
+            if (check(random) > 0) {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            System.out.println("FAIL " + failed + " of " + maps + " maps have blocks in the wrong place");
+            System.exit(1);
+        }
+        System.out.println("ok   " + maps + " maps: every blocked tile covered once, with slack only next to walkable tiles");
+    }
+}
@@ -12,6 +12,7 @@ import java.awt.Rectangle;
 class OverWorld {
     private Player player;
     private ArrayList<Room> mapArea;
+    private final Rectangle entrance = new Rectangle(48*4, 48+150, 48, 48-35);     //the dungeon's entrance (in region 7)
 
     //sets up all the rooms and puts them into an arraylist to form a grid
     public OverWorld(Player player) {
@@ -32,6 +33,9 @@ class OverWorld {
     }
 
     public ArrayList<Room> getArea() {return mapArea;}
+
+    //the regions right next to a region (up, right, down and left) that exist
+    public ArrayList<Room> getNeighbours(Room room) {return RoomLoader.neighbours(mapArea, 3, room);}
     
     public void switchRooms() {
         //switches the player's current room depending on if they hit the edge of the screen,
@@ -40,8 +44,6 @@ class OverWorld {
         int tileHeight = 48;
         int roomOffset = 150;
 
-        Rectangle entrance = new Rectangle(tileWidth*4, tileHeight+roomOffset, tileWidth,tileHeight-35);
-
         if (player.getY() < 150) {
             player.setRoom(mapArea.get(mapArea.indexOf(player.getRoom())-3));
             player.setY(550);
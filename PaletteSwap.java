@@ -0,0 +1,114 @@
+/**
+ * PaletteSwap.java
+ * Makes colour variants of sprites by giving them a different palette, the way the NES did it
+ * Sprites are kept as palette pictures (see IndexedImages), so a variant is just a new palette
+ * wrapped around the very same pixels: N variants cost N small palettes, not N more pictures
+ * - hidden: every colour see-through (the invincibility flicker, instead of drawing a blank picture)
+ * - flash:  every colour white (the frame an enemy or the boss is hit)
+ * - tier:   colours shifted around for stronger kinds of an enemy
+ * Variants are made when a character is made (see prepare), so drawing never has to make one, and kept
+ * until the sprite itself is dropped (see AssetManager), along with the variants of those variants
+ * Sprites that aren't palette pictures (more than 256 colours) are handed back unchanged
+ */
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+class PaletteSwap {
+    public static final String HIDDEN = "hidden", FLASH = "flash", TIER = "tier";
+
+    //variants of every sprite by name
+    private static IdentityHashMap<Image, HashMap<String, Image>> variants = new IdentityHashMap<Image, HashMap<String, Image>>();
+    private static int made;
+    private static long paletteBytes;
+
+    static {
+        AssetManager.addReleaseListener(PaletteSwap::forget);
+    }
+
+    public static Image hidden(Image sprite) {
+        return variant(sprite, HIDDEN, colour -> colour & 0x00ffffff);
+    }
+
+    public static Image flash(Image sprite) {
+        return variant(sprite, FLASH, colour -> colour | 0x00ffffff);
+    }
+
+    //tier 1 and 2 rotate the red, green and blue of every colour once or twice (0 is the sprite itself)
+    public static Image tier(Image sprite, int tier) {
+        switch (tier % 3) {
+            case 1:
+            return variant(sprite, TIER + 1, colour -> (colour & 0xff000000) | ((colour & 0xffff) << 8) | ((colour >> 16) & 0xff));
+            case 2:
+            return variant(sprite, TIER + 2, colour -> (colour & 0xff000000) | ((colour & 0xff) << 16) | ((colour >> 8) & 0xffff));
+            default:
+            return sprite;
+        }
+    }
+
+    //makes every variant a character's pictures can be drawn with at a tier (its colours, blinked out and flashing)
+    // ahead of time; asking for any of them later just looks it up
+    public static void prepare(List<Image> sprites, int tier) {
+        for (Image sprite : sprites) {
+            Image tiered = tier(sprite, tier);
+            hidden(tiered);
+            flash(tiered);
+        }
+    }
+
+    //the sprite with every palette colour passed through recolour, sharing the sprite's pixels
+    public static synchronized Image variant(Image sprite, String name, IntUnaryOperator recolour) {
+        HashMap<String, Image> named = variants.get(sprite);
+        if (named == null) {
+            named = new HashMap<String, Image>();
+            variants.put(sprite, named);
+        }
+        Image variant = named.get(name);
+        if (variant != null) {
+            return variant;
+        }
+
+        variant = sprite;
+        if (sprite instanceof BufferedImage && ((BufferedImage)sprite).getColorModel() instanceof IndexColorModel) {
+            BufferedImage base = (BufferedImage)sprite;
+            IndexColorModel palette = (IndexColorModel)base.getColorModel();
+            int[] colours = new int[palette.getMapSize()];
+            palette.getRGBs(colours);
+            for (int i = 0; i < colours.length; i++) {
+                colours[i] = recolour.applyAsInt(colours[i]);
+            }
+            IndexColorModel swapped = new IndexColorModel(palette.getPixelSize(), colours.length, colours, 0, true, -1, DataBuffer.TYPE_BYTE);
+            //same raster, so no pixels are copied
+            variant = new BufferedImage(swapped, base.getRaster(), false, null);
+            made++;
+            paletteBytes += 4L*colours.length;
+        }
+        named.put(name, variant);
+        return variant;
+    }
+
+    //drops the variants of a sprite nothing uses any more, and the variants made from those (a tier's hidden and
+    // flash pictures), since they are made from the same pixels; whatever keeps data for them is told too
+    public static synchronized void forget(Image sprite) {
+        HashMap<String, Image> named = variants.remove(sprite);
+        if (named == null) {
+            return;
+        }
+        for (Image variant : named.values()) {
+            if (variant != sprite) {
+                //this comes back to forget for the variant's own variants
+                AssetManager.dropped(variant);
+            }
+        }
+    }
+
+    public static synchronized void report() {
+        System.out.printf("Palette variants: %d made, %d bytes of palettes%n", made, paletteBytes);
+    }
+}
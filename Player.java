@@ -9,7 +9,7 @@
  */
 
 import java.awt.*;
-import javax.swing.ImageIcon;
+import java.util.List;
 
 class Player{
 
@@ -18,38 +18,27 @@ class Player{
     public final int DOWN = 2;
     public final int LEFT = 3;
 
-    //to be shown for certain frames when player takes damage
-    public final Image noPic = new ImageIcon("Resources/Enemies/noPic.png").getImage();
-    //image sets for animations while walking and attacking
-    public final Image[][] imageSetWalking = {{new ImageIcon("Resources/Link/Walking/Walk0.png").getImage(),new ImageIcon("Resources/Link/Walking/Walk1.png").getImage()},
-                                              {new ImageIcon("Resources/Link/Walking/Walk2.png").getImage(),new ImageIcon("Resources/Link/Walking/Walk3.png").getImage()},
-                                              {new ImageIcon("Resources/Link/Walking/Walk4.png").getImage(),new ImageIcon("Resources/Link/Walking/Walk5.png").getImage()},
-                                              {new ImageIcon("Resources/Link/Walking/Walk6.png").getImage(),new ImageIcon("Resources/Link/Walking/Walk7.png").getImage()}};
+    //walking and striking clips facing each direction (see Resources/Animations/Link.txt)
+    private Animation animation;
+    private Animation.Clip[] walkClips, strikeClips;
 
-    public final Image[][] imageSetStriking = {{new ImageIcon("Resources/Link/Striking/Strike0.png").getImage(),new ImageIcon("Resources/Link/Striking/Strike1.png").getImage(),new ImageIcon("Resources/Link/Striking/Strike2.png").getImage(),new ImageIcon("Resources/Link/Striking/Strike3.png").getImage()},
-                                               {new ImageIcon("Resources/Link/Striking/Strike4.png").getImage(),new ImageIcon("Resources/Link/Striking/Strike5.png").getImage(),new ImageIcon("Resources/Link/Striking/Strike6.png").getImage(),new ImageIcon("Resources/Link/Striking/Strike7.png").getImage()},
-                                               {new ImageIcon("Resources/Link/Striking/Strike8.png").getImage(),new ImageIcon("Resources/Link/Striking/Strike9.png").getImage(),new ImageIcon("Resources/Link/Striking/Strike10.png").getImage(),new ImageIcon("Resources/Link/Striking/Strike11.png").getImage()},
-                                               {new ImageIcon("Resources/Link/Striking/Strike12.png").getImage(),new ImageIcon("Resources/Link/Striking/Strike13.png").getImage(),new ImageIcon("Resources/Link/Striking/Strike14.png").getImage(),new ImageIcon("Resources/Link/Striking/Strike15.png").getImage()}};
     //the images for the sword projectile (depending on direction)
-    public final Image[] imageSetLaser = {new ImageIcon("Resources/Link/SwordShot/UpShot.png").getImage(), new ImageIcon("Resources/Link/SwordShot/RightShot.png").getImage(), new ImageIcon("Resources/Link/SwordShot/DownShot.png").getImage(), new ImageIcon("Resources/Link/SwordShot/LeftShot.png").getImage()};
+    public final Image[] imageSetLaser = {AssetManager.acquire("Resources/Link/SwordShot/UpShot.png"), AssetManager.acquire("Resources/Link/SwordShot/RightShot.png"), AssetManager.acquire("Resources/Link/SwordShot/DownShot.png"), AssetManager.acquire("Resources/Link/SwordShot/LeftShot.png")};
     
     private int health;
     private Sound damaged;      //sound to be played when hit
     
     private int playerX, playerY, dx, dy;
+    private int drawnX, drawnY;     //where the player was last drawn (frames between ticks show them moving on from there)
     private int[] playerKeys;   //keys the player can use
     private int dir;
-    private int offset = 5;     //some slack is given for the player rectangle through this offset to not be strict when colliding
 
-    private Image[] walkAnimate;    //frames of animation (walking)
-    private int walkFrame;          //current frame
-    private int wait;               //animation delay counter (decrements every frame, when 0, animation progresses to next frame)
-    private int startWait;          //animation delay timer ("wait" resets to this every time the frame progresses)    
-
-    private Image[] attackAnimate;  //frames of animation (striking)
-    private int attackFrame;        //current frame
+    private Animator walking;       //frames of animation (walking); its hitbox is the player's, with some slack to not be strict when colliding
+    private Animator striking;      //frames of animation (striking)
     private boolean isAttacking;
     private Rectangle attackRect;   //the rectangle that encloses just the sword when the player attacks
+    private Hitbox hitbox = new Hitbox(), swordHitbox = new Hitbox();
+    private Rectangle bounds = new Rectangle();     //handed out by getRect, moved to where the player is each time
     private int iframes = 0;        
     private Sound swordSwing;       //sound to be played when sword is swung
 
@@ -73,15 +62,12 @@ class Player{
         playerKeys = keys;
         dir = RIGHT;
 
-        walkAnimate = new Image[2];
-        walkAnimate[0] = imageSetWalking[2][0];
-        walkAnimate[1] = imageSetWalking[2][1];
-        walkFrame = 0;
-        startWait = 3;
-        wait = startWait;
-
-        attackAnimate = new Image[4];
-        attackFrame = 0;
+        animation = Animation.acquire("Link");
+        PaletteSwap.prepare(animation.getPictures(), 0);
+        walkClips = animation.directional("walk");
+        strikeClips = animation.directional("strike");
+        walking = new Animator(walkClips[DOWN]);
+        striking = new Animator(strikeClips[dir]);
         isAttacking = false;
         attackRect = new Rectangle();
         canShoot = false;
@@ -105,12 +91,27 @@ class Player{
     public int getY() {return playerY;}
     public int getDX() {return dx;}
     public int getDY() {return dy;}
-    public int getWidth() {return walkAnimate[walkFrame].getWidth(null);}
-    public int getHeight() {return walkAnimate[walkFrame].getHeight(null);}
+    public int getWidth() {return walking.getFrame().width;}
+    public int getHeight() {return walking.getFrame().height;}
     public int getDir() {return dir;}
     public int getHealth() {return health;}
-    public Rectangle getRect() {return new Rectangle(playerX+offset, playerY+offset, getWidth()-2*offset, getHeight()-2*offset);}
+    //the same rectangle every time (nothing is allocated while colliding), so copy it to keep it
+    public Rectangle getRect() {
+        Animation.Frame body = walking.getFrame();
+        bounds.setBounds(playerX+body.hitX, playerY+body.hitY, body.hitWidth, body.hitHeight);
+        return bounds;
+    }
     public Rectangle getAttackRect() {return attackRect;}
+    public Hitbox getSwordHitbox() {return swordHitbox;}
+    //where the player can be hit: the walking picture with some slack, or all of it when hits are pixel-exact
+    public Hitbox getHitbox() {
+        Animation.Frame body = walking.getFrame();
+        int x = playerX+body.drawX, y = playerY+body.drawY;
+        if (body.mask != null) {
+            return hitbox.set(x, y, body.width, body.height, body.mask, x, y);
+        }
+        return hitbox.set(playerX+body.hitX, playerY+body.hitY, body.hitWidth, body.hitHeight, null, 0, 0);
+    }
     public Room getRoom() {return currentRoom;}
     public OverWorld getOverWorld() {return overworld;}
     public Dungeon getDungeon() {return dungeon;}
@@ -123,62 +124,59 @@ class Player{
     public void setDX(int dx) {this.dx = dx;}
     public void setDY(int dy) {this.dy = dy;}
     public void setHealth(int newHealth) {health = newHealth;}
-    public void setRoom(Room room) {currentRoom = room;}
+    //rooms are baked as the player gets near them, so one the player walks into before that is baked right away
+    // (and the ones around it are baked ahead of time)
+    public void setRoom(Room room) {
+        if (room != null) {
+            List<Room> neighbours = overworld.getArea().contains(room) ? overworld.getNeighbours(room) : dungeon.getNeighbours(room);
+            RoomLoader.entered(room, neighbours);
+        }
+        currentRoom = room;
+    }
     public void setState(String newState) {state = newState;}
     public void setCanAttack(boolean newCanAttack) {isAttacking = newCanAttack;}
     public void setCanShoot(boolean newCanShoot) {canShoot = newCanShoot;}
     public void setIFrames(int newIFrames) {iframes = newIFrames;}
     
 
-    public void draw(Graphics g) {
-        //chooses animation frames depending on direction
-        for (int i = 0; i < imageSetWalking[0].length; i++) {
-            walkAnimate[i] = imageSetWalking[dir][i];
-        }
-        for (int i = 0; i < imageSetStriking[0].length; i++) {
-            attackAnimate[i] = imageSetStriking[dir][i];
-        }
+    //chooses animation frames depending on direction
+    public void chooseFrames() {
+        walking.setClip(walkClips[dir]);
+        striking.setClip(strikeClips[dir]);
+    }
 
-        //as the attack images are larger than the walk images, the offset is the difference between them, which
-        // solve the problem of incorrectly drawing the attack images
-        //also change the attack rectangle
-        int imageOffsetX = attackAnimate[attackFrame].getWidth(null) - walkAnimate[walkFrame].getWidth(null);
-        int imageOffsetY = attackAnimate[attackFrame].getHeight(null) - walkAnimate[walkFrame].getHeight(null);
+    //puts the player's sprite (and their sword projectile) in the render queue
+    public void draw(RenderQueue queue) {
+        chooseFrames();
+        int moveX = playerX-drawnX, moveY = playerY-drawnY;
+        drawnX = playerX;
+        drawnY = playerY;
 
-        //draws the attack frames and sets attackRect with respect to direction
+        //the attack images are larger than the walk images, so each striking frame says where it is drawn
+        // and where its sword is (the attack rectangle) with respect to the player
         if (isAttacking) {
-            if (dir == UP) { 
-                g.drawImage(attackAnimate[attackFrame],playerX-imageOffsetX,playerY-imageOffsetY,null);
-                attackRect.setRect(playerX-imageOffsetX,playerY-imageOffsetY, attackAnimate[attackFrame].getWidth(null), imageOffsetY);
-            }
-            else if (dir == LEFT) {
-                g.drawImage(attackAnimate[attackFrame],playerX-imageOffsetX,playerY-imageOffsetY,null);
-                attackRect.setRect(playerX-imageOffsetX,playerY-imageOffsetY, imageOffsetX, attackAnimate[attackFrame].getHeight(null));
-            }
-            else if (dir == RIGHT){
-                g.drawImage(attackAnimate[attackFrame],playerX,playerY,null);
-                attackRect.setRect(playerX+walkAnimate[walkFrame].getWidth(null),playerY, imageOffsetX, attackAnimate[attackFrame].getHeight(null));
-            }
-            else if (dir == DOWN) {
-                g.drawImage(attackAnimate[attackFrame],playerX,playerY,null);
-                attackRect.setRect(playerX,playerY+walkAnimate[walkFrame].getHeight(null), attackAnimate[attackFrame].getWidth(null), imageOffsetY);
-            }
+            Animation.Frame strike = striking.getFrame();
+            queue.add(RenderQueue.LAYER_ACTORS, strike.image, playerX+strike.drawX, playerY+strike.drawY, moveX, moveY);
+            attackRect.setRect(playerX+strike.attackX, playerY+strike.attackY, strike.attackWidth, strike.attackHeight);
+            swordHitbox.set(attackRect.x, attackRect.y, attackRect.width, attackRect.height, strike.mask, playerX+strike.drawX, playerY+strike.drawY);
         }
         ////while the player is going through their invincibility frames, the 1st and 2nd frames will be a blank image
         // and the rest will show the enemy; emulates a flickering effect to show damage has been dealt
         else {
+            Animation.Frame step = walking.getFrame();
             if (iframes%5 == 1 || iframes%5 == 2) {
-                g.drawImage(noPic, playerX, playerY, null);
+                queue.add(RenderQueue.LAYER_ACTORS, PaletteSwap.hidden(step.image), playerX+step.drawX, playerY+step.drawY, moveX, moveY);
             }
             else {
-                g.drawImage(walkAnimate[walkFrame],playerX,playerY,null);
+                queue.add(RenderQueue.LAYER_ACTORS, step.image, playerX+step.drawX, playerY+step.drawY, moveX, moveY);
             }
             //if the player is not attacking, the attack rectangle is set to an arbitrary position and size
             attackRect.setRect(0,0,0,0);
+            swordHitbox.set(0, 0, 0, 0, null, 0, 0);
         }
 
         if (canShoot) {
-            swordLaser.draw(g);            
+            swordLaser.draw(queue);            
         }
     }
 
@@ -211,13 +209,7 @@ class Player{
         
         //animates the player with the previously mentioned delay
         if (isMoving){
-            if (wait == 0) {
-                walkFrame = (walkFrame +1) % walkAnimate.length;
-                wait = startWait;
-            }
-            else {
-                wait--;
-            }
+            walking.tick();
         }
         if (isAttacking) {
             attack();
@@ -237,21 +229,18 @@ class Player{
     public void stopMoving() {
         //stops the player from moving further if they collide with a border in the dungeon
         //or blocks/terrain
+        //(only the ones near the player are checked, see CollisionGrid)
         if (state.equals("dungeon")) {
-            for (Obstacle barrier : currentRoom.getBorders()) {
-                barrier.collide(this);
-            }
-        }
-        for (Obstacle block : currentRoom.getCollideSquares()) {
-            block.collide(this);
+            currentRoom.getBorderGrid().collide(this);
         }
+        currentRoom.getSquareGrid().collide(this);
     }
 
     public void attack() {
         //attack animation is played and stops once one cycle is made and the frame goes back to 0
-        attackFrame = (attackFrame +1) % attackAnimate.length;
+        striking.tick();
         swordSwing.play();
-        if (attackFrame == 0) {
+        if (striking.getIndex() == 0) {
             isAttacking = false;
         }
     }
@@ -272,10 +261,10 @@ class Player{
         }
     }
 
-    public void checkHitByEntity(Rectangle rect) {
+    public void checkHitByEntity(Hitbox entity) {
         //sees if the player is colliding with a certain living thing
         //their health is reduced by one and they become invincible for some time
-        if (rect.intersects(getRect()) && iframes == 0) {
+        if (entity.touches(getHitbox()) && iframes == 0) {
             damaged.play();
             knockBack();
             health--;
@@ -327,6 +316,11 @@ class Player{
                     break;
                 }
             }
+            //the shot stops at the walls and blocks of the room (swept with the image it is flying with)
+            if (state.equals("dungeon")) {
+                swordLaser.stopAt(currentRoom.getBorderGrid());
+            }
+            swordLaser.stopAt(currentRoom.getSquareGrid());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+/**
+ * Profiler.java
+ * Times the phases of loading the game (fonts, sounds, room layouts, scaling, baking, enemies, the room cache),
+ * so a slow start can be traced back to the room or file that caused it
+ * Phases nest: a phase started while another one is running on the same thread is counted as part of it,
+ * and its time is taken out of the outer phase's own ("self") time
+ * Each phase records its wall clock time and the cpu time of its thread
+ * Turned on with -Dzelda.profile=true, which prints a summary once the world is loaded, and/or with
+ * -Dzelda.profileTrace=file, which also writes every phase to that file in the chrome trace format
+ * (opened with chrome://tracing or ui.perfetto.dev)
+ * Usage: try (Profiler.Phase phase = Profiler.begin("sound", fileName)) { ... }
+ * (javac -Xlint warns that phase is never used inside the block, so methods timing a phase this way
+ * are marked @SuppressWarnings("try"))
+ */
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+class Profiler {
+    public static final String TRACE_FILE = System.getProperty("zelda.profileTrace");
+    public static final boolean ENABLED = Boolean.getBoolean("zelda.profile") || TRACE_FILE != null;
+    public static final int SLOWEST = 10;           //how many of the slowest single phases are listed
+
+    //one timed phase; kind is what sort of work it is (the summary adds up phases by kind),
+    // detail says which room or file it was for
+    public static class Phase implements AutoCloseable {
+        private String kind, detail;
+        private Phase parent;
+        private String thread;
+        private long threadId;
+        private long start, startCpu;
+        private long wall, cpu, children;           //nanoseconds; children is the wall time of the phases inside it
+
+        private Phase() {}
+
+        public void close() {
+            if (this != NONE) {
+                end(this);
+            }
+        }
+
+        //where the phase happened, e.g. "load > room Layout4 > header"
+        public String path() {
+            String name = detail == null ? kind : kind + " " + detail;
+            return parent == null ? name : parent.path() + " > " + name;
+        }
+    }
+
+    //handed out while profiling is off, closing it does nothing
+    private static final Phase NONE = new Phase();
+
+    private static final long ORIGIN = System.nanoTime();      //trace times are measured from here
+    private static ThreadMXBean threads;
+    private static ThreadLocal<ArrayDeque<Phase>> running = ThreadLocal.withInitial(ArrayDeque::new);
+    private static ArrayList<Phase> finished = new ArrayList<Phase>();
+    private static volatile boolean recording = ENABLED;
+
+    static {
+        if (ENABLED) {
+            threads = ManagementFactory.getThreadMXBean();
+            if (!threads.isCurrentThreadCpuTimeSupported()) {
+                threads = null;
+            }
+        }
+    }
+
+    public static Phase begin(String kind) {
+        return begin(kind, null);
+    }
+
+    public static Phase begin(String kind, String detail) {
+        if (!recording) {
+            return NONE;
+        }
+        ArrayDeque<Phase> stack = running.get();
+        Phase phase = new Phase();
+        phase.kind = kind;
+        phase.detail = detail;
+        phase.parent = stack.peek();
+        phase.thread = Thread.currentThread().getName();
+        phase.threadId = Thread.currentThread().getId();
+        phase.startCpu = threads != null ? threads.getCurrentThreadCpuTime() : 0;
+        phase.start = System.nanoTime();
+        stack.push(phase);
+        return phase;
+    }
+
+    private static void end(Phase phase) {
+        phase.wall = System.nanoTime() - phase.start;
+        phase.cpu = threads != null ? threads.getCurrentThreadCpuTime() - phase.startCpu : 0;
+        ArrayDeque<Phase> stack = running.get();
+        stack.remove(phase);
+        if (phase.parent != null) {
+            phase.parent.children += phase.wall;
+        }
+        synchronized (Profiler.class) {
+            finished.add(phase);
+        }
+    }
+
+    //prints the summary and writes the trace file, then stops recording (rooms baked later on are not timed)
+    public static void finish() {
+        if (!ENABLED) {
+            return;
+        }
+        recording = false;
+        ArrayList<Phase> phases;
+        synchronized (Profiler.class) {
+            phases = new ArrayList<Phase>(finished);
+        }
+        report(phases);
+        if (TRACE_FILE != null) {
+            writeTrace(phases, TRACE_FILE);
+        }
+    }
+
+    //adds up the phases by kind, in the order each kind first finished, then lists the slowest single phases
+    private static void report(ArrayList<Phase> phases) {
+        LinkedHashMap<String, long[]> kinds = new LinkedHashMap<String, long[]>();   //count, wall, self, cpu, max
+        LinkedHashMap<String, Phase> slowestOfKind = new LinkedHashMap<String, Phase>();
+        for (Phase phase : phases) {
+            long[] total = kinds.computeIfAbsent(phase.kind, k -> new long[5]);
+            total[0]++;
+            total[1] += phase.wall;
+            total[2] += phase.wall - phase.children;
+            total[3] += phase.cpu;
+            if (phase.wall > total[4]) {
+                total[4] = phase.wall;
+                slowestOfKind.put(phase.kind, phase);
+            }
+        }
+
+        System.out.printf("Startup profile: %d ms since the game started%n", ManagementFactory.getRuntimeMXBean().getUptime());
+        System.out.printf("  %-14s %6s %10s %10s %10s %10s  %s%n", "phase", "count", "wall ms", "self ms", "cpu ms", "max ms", "slowest");
+        for (String kind : kinds.keySet()) {
+            long[] total = kinds.get(kind);
+            Phase slowest = slowestOfKind.get(kind);
+            System.out.printf("  %-14s %6d %10.1f %10.1f %10.1f %10.1f  %s%n", kind, total[0], total[1]/1e6, total[2]/1e6,
+                              total[3]/1e6, total[4]/1e6, slowest.detail == null ? "" : slowest.detail);
+        }
+
+        ArrayList<Phase> byTime = new ArrayList<Phase>(phases);
+        Collections.sort(byTime, (a, b) -> Long.compare(b.wall - b.children, a.wall - a.children));
+        System.out.println("  slowest phases (self ms):");
+        for (int i = 0; i < Math.min(SLOWEST, byTime.size()); i++) {
+            Phase phase = byTime.get(i);
+            System.out.printf("  %10.1f  %s [%s]%n", (phase.wall - phase.children)/1e6, phase.path(), phase.thread);
+        }
+    }
+
+    //one complete ("X") event per phase, times in microseconds since profiling started,
+    // plus the name of every thread they ran on
+    private static void writeTrace(ArrayList<Phase> phases, String fileName) {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(fileName)))) {
+            out.println("{\"traceEvents\":[");
+            LinkedHashMap<Long, String> threadNames = new LinkedHashMap<Long, String>();
+            for (Phase phase : phases) {
+                threadNames.put(phase.threadId, phase.thread);
+            }
+            for (Long id : threadNames.keySet()) {
+                out.printf("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,\"args\":{\"name\":\"%s\"}},%n",
+                           id, quote(threadNames.get(id)));
+            }
+            for (int i = 0; i < phases.size(); i++) {
+                Phase phase = phases.get(i);
+                out.printf(Locale.ROOT, "{\"name\":\"%s\",\"cat\":\"%s\",\"ph\":\"X\",\"pid\":1,\"tid\":%d,\"ts\":%.1f,\"dur\":%.1f,\"args\":{\"cpu_ms\":%.3f}}%s%n",
+                           quote(phase.detail == null ? phase.kind : phase.kind + " " + phase.detail), quote(phase.kind),
+                           phase.threadId, (phase.start - ORIGIN)/1e3, phase.wall/1e3, phase.cpu/1e6,
+                           i < phases.size()-1 ? "," : "");
+            }
+            out.println("],\"displayTimeUnit\":\"ms\"}");
+            System.out.println("Startup trace written to " + fileName);
+        }
+        catch (IOException e) {
+            System.out.println("Couldn't write the startup trace: " + e);
+        }
+    }
+
+    private static String quote(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -5,6 +5,10 @@
  * to the entity that called them after conditions are met
  * While most projectiles can only move in the 4 primary directions,
  * boss shots can move at an angle relative to the player
+ * Hits are tested along the whole of a shot's last move (see Sweep), not just where it ended up,
+ * so a fast shot can't skip over something between two ticks
+ * Shots that are stopped at walls and blocks (see stopAt) are cut short the same way, at the first
+ * one they run into, however thin it is
  */
 
 import java.awt.*;
@@ -13,9 +17,15 @@ class Projectile {
     public final int UP = 0, RIGHT = 1, DOWN = 2, LEFT = 3;
 
     private int shotX, shotY, dx, dy, dir;
+    private int fromX, fromY;       //where the shot was before its last move (the same as shotX,shotY after a jump)
     private boolean shotMade;
     private boolean outOfBounds;
+    private boolean blocked;        //the last move ran into a wall or block, so the shot is sent out on its next one
     private Image img;
+    private SpriteMask mask;        //solid pixels of img (null unless hits are pixel-exact)
+    private Hitbox hitbox = new Hitbox();
+    private Rectangle bounds = new Rectangle();     //handed out by getRect
+    private Rectangle path = new Rectangle();       //handed out by getPath
 
     public Projectile(int x, int y, int dx, int dy, Image img) {
         shotX = x;
@@ -26,16 +36,25 @@ class Projectile {
         shotMade = false;
         outOfBounds = false;
         this.img = img;
+        mask = SpriteMask.of(img);
+        settle();
     }
 
     public Projectile(Player player, Boss boss, int x, int y, int pos, Image img) {
+        this.img = img;
+        mask = SpriteMask.of(img);
+        aim(player, boss, x, y, pos);
+    }
+
+    //sends the fireball out again from x,y (the boss reuses its fireballs for every volley)
+    public void aim(Player player, Boss boss, int x, int y, int pos) {
         ///pos is the position of the fireball
         shotX = x;
         shotY = y;
+        settle();
         dir = UP;
         shotMade = false;
         outOfBounds = false;
-        this.img = img;
 
         //calculates the angle at which to shoot the fireball at,
         //if the position of the fireball is the top(1) or bottom(3), their
@@ -64,21 +83,37 @@ class Projectile {
     public int getDir() {return dir;}
     public boolean getShotMade() {return shotMade;}
     public boolean getOutOfBounds() {return outOfBounds;}
-    public Rectangle getRect() {return new Rectangle(shotX, shotY, img.getWidth(null), img.getHeight(null));}
+    //the same rectangle every time, moved to where the shot is
+    public Rectangle getRect() {
+        bounds.setBounds(shotX, shotY, img.getWidth(null), img.getHeight(null));
+        return bounds;
+    }
+    public Hitbox getHitbox() {return hitbox.set(shotX, shotY, img.getWidth(null), img.getHeight(null), mask, shotX, shotY);}
+    //everywhere the shot went through in its last move (the same rectangle every time)
+    public Rectangle getPath() {return Sweep.path(fromX, fromY, img.getWidth(null), img.getHeight(null), shotX-fromX, shotY-fromY, path);}
 
-    public void setX(int newShotX) {shotX = newShotX;}
-    public void setY(int newShotY) {shotY = newShotY;}
+    public void setX(int newShotX) {shotX = newShotX; settle();}
+    public void setY(int newShotY) {shotY = newShotY; settle();}
     public void setDir(int newDir) {dir = newDir;}
     public void setShotMade(boolean isShot) {shotMade = isShot;}
-    public void setImage(Image newImg) {img = newImg;}
+    public void setImage(Image newImg) {
+        img = newImg;
+        mask = SpriteMask.of(img);
+    }
     public void setDX(int newDX) {dx = newDX;}
     public void setDY(int newDY) {dy = newDY;}
 
-    public void draw(Graphics g) {
-        g.drawImage(img, shotX, shotY, null);
+    public void draw(RenderQueue queue) {
+        queue.add(RenderQueue.LAYER_SHOTS, img, shotX, shotY, shotX-fromX, shotY-fromY);
     }
 
     public void move(int x, int y) { //player.getX() | boss.getX() | enemy.getX()
+        settle();
+        //a shot stopped at a wall last tick is sent off screen like one that hit something (and so is out of bounds below)
+        if (blocked) {
+            blocked = false;
+            sendOut();
+        }
         //regular projectiles shoot in one of the 4 directions
         switch(dir) {
             case UP:
@@ -116,6 +151,7 @@ class Projectile {
         if (shotMade) {
             shotX = x;
             shotY = y;
+            settle();
             outOfBounds = false;
         }
 
@@ -124,18 +160,63 @@ class Projectile {
     public void move(Boss boss) {
         //exclusive to boss projectiles, just moves the bullets
         //and lets the boss class take care of reseting shots
+        settle();
         shotX += dx;
         shotY += dy;
     }
 
-    //sees if the player's sword projectile hits a rectangle (an entity)
-    public boolean hit(Rectangle rect) {
-        return getRect().intersects(rect);
+    //stops the shot where its last move first ran into one of a grid's obstacles, so it can't go through
+    // walls or blocks; it stays there until its next move (so whatever it passed on the way is still hit), then is sent out
+    //a wall the shot was already in when it set off doesn't stop it (see CollisionGrid.sweep)
+    public void stopAt(CollisionGrid grid) {
+        int moveX = shotX-fromX, moveY = shotY-fromY;
+        if (moveX == 0 && moveY == 0) {
+            return;
+        }
+        bounds.setBounds(fromX, fromY, img.getWidth(null), img.getHeight(null));
+        double time = grid.sweep(bounds, moveX, moveY);
+        if (time != Sweep.MISS) {
+            //rounded back towards where it came from, so it ends up touching the obstacle at most
+            shotX = fromX + (int)(moveX*time);
+            shotY = fromY + (int)(moveY*time);
+            blocked = true;
+        }
+    }
+
+    //sees if the player's sword projectile hits an entity
+    public boolean hit(Hitbox entity) {
+        return contact(entity) != Sweep.MISS;
     }
 
     //sees if a projectile from an entity hits the player
     public boolean hit(Player player) {
-        return getRect().intersects(player.getRect());
+        return contact(player.getHitbox()) != Sweep.MISS;
+    }
+
+    //how far through its last move the shot first touched something (0 to 1), or Sweep.MISS
+    public double contact(Hitbox entity) {
+        int width = img.getWidth(null), height = img.getHeight(null);
+        int moveX = shotX-fromX, moveY = shotY-fromY;
+        double time = Sweep.time(fromX, fromY, width, height, moveX, moveY, entity.getRect());
+        if (time == Sweep.MISS || mask == null || entity.getMask() == null) {
+            return time;
+        }
+        //with pixel-exact hits the masks are tested a pixel at a time from where the rectangles first meet
+        int steps = Math.max(Math.abs(moveX), Math.abs(moveY));
+        for (int step = (int)Math.floor(time*steps); step <= steps; step++) {
+            int x = fromX + (steps == 0 ? 0 : Math.round((float)moveX*step/steps));
+            int y = fromY + (steps == 0 ? 0 : Math.round((float)moveY*step/steps));
+            if (hitbox.set(x, y, width, height, mask, x, y).touches(entity)) {
+                return steps == 0 ? 0 : (double)step/steps;
+            }
+        }
+        return Sweep.MISS;
+    }
+
+    //the shot starts its next move from where it is (after it jumps rather than moves)
+    private void settle() {
+        fromX = shotX;
+        fromY = shotY;
     }
 
     public void sendOut() {
@@ -154,6 +235,7 @@ class Projectile {
             shotX = -50;
             break;
         }
+        settle();
     }
     
 }
@@ -0,0 +1,212 @@
+/**
+ * RenderQueue.java
+ * Collects the sprites to draw in a frame instead of having every object draw itself straight away
+ * Each sprite is put on a layer (floor items, characters, projectiles), and characters are ordered by
+ * how low on the screen they stand so ones in front overlap ones behind
+ * The sprites are sorted with a radix sort on one packed int key per sprite, which also groups
+ * sprites using the same picture together, then the whole queue is drawn once per frame
+ * Pictures are numbered again from 0 in every room and after any picture is dropped (see AssetManager),
+ * so the numbers don't keep pictures from rooms left behind
+ * Sprites also remember how far they moved in the tick they were queued in, so frames drawn between two
+ * ticks can show them part of the way there (see setBlend) instead of repeating the last tick
+ */
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+class RenderQueue {
+    public static final int LAYER_GROUND = 0;       //items lying on the floor
+    public static final int LAYER_ACTORS = 1;       //player, enemies and the boss
+    public static final int LAYER_SHOTS = 2;        //projectiles fly over everything
+
+    //key layout: layer (3 bits) | depth (12 bits) | picture id (16 bits), highest first
+    private static final int DEPTH_BITS = 12, IMAGE_BITS = 16;
+    private static final int MAX_DEPTH = (1 << DEPTH_BITS) - 1;
+    private static final int DEPTH_SHIFT = 2048;    //depth is the bottom of the sprite, which can be off the top of the screen
+
+    private int size;
+    private Image[] images;
+    private int[] xs, ys, widths, heights;
+    private int[] moveXs, moveYs;                   //how far each sprite moved since the tick before
+    private double blend = 1;                       //how far frames are drawn from the tick before to this one
+    private boolean still;                          //sprites queued this tick jump to where they are instead of sliding
+    private int[] keys;
+    private int[] order, scratch;                   //indices of the sprites in drawing order (and room to sort them)
+    private int[] counts;
+    private boolean sorted;
+
+    private IdentityHashMap<Image, Integer> imageIds;   //gives every picture a small number for the sort key
+    private Integer[] numbers = new Integer[64];    //the numbers handed out so far, kept so numbering again allocates nothing
+    private int drops;                              //pictures AssetManager had dropped when they were last numbered
+    private int imageSwitches;                      //times the picture changed from one sprite to the next last flush
+
+    public RenderQueue() {
+        grow(64);
+        counts = new int[256];
+        imageIds = new IdentityHashMap<Image, Integer>();
+    }
+
+    public int size() {return size;}
+    public boolean isEmpty() {return size == 0;}
+    public int getImageSwitches() {return imageSwitches;}
+
+    //the sprites in drawing order (only after sort), where they are drawn at the current blend
+    public Image getImage(int i) {return images[order[i]];}
+    public int getX(int i) {return drawX(order[i]);}
+    public int getY(int i) {return drawY(order[i]);}
+    public int getWidth(int i) {return widths[order[i]];}
+    public int getHeight(int i) {return heights[order[i]];}
+
+    //draws sprites a fraction of the way from where they were the tick before (0) to where they are (1)
+    public void setBlend(double blend) {
+        this.blend = blend;
+    }
+
+    //the sprites queued until the next clear are drawn where they are, even between ticks (when the room
+    // changes, so nothing slides across the screen from where it was in the last room)
+    public void holdStill() {
+        still = true;
+    }
+
+    public void clear() {
+        size = 0;
+        sorted = false;
+        still = false;
+        //pictures are dropped on other threads (rooms thrown away by the loader), so this only notices
+        // here, between frames, and starts the numbering over
+        if (drops != AssetManager.getDrops()) {
+            forgetImages();
+        }
+    }
+
+    //starts numbering pictures over (when the room changes)
+    public void forgetImages() {
+        imageIds.clear();
+        drops = AssetManager.getDrops();
+    }
+
+    //adds a sprite drawn with its top left at x,y
+    public void add(int layer, Image img, int x, int y) {
+        add(layer, img, x, y, 0, 0);
+    }
+
+    //adds a sprite drawn with its top left at x,y that has moved by moveX,moveY since the tick before
+    public void add(int layer, Image img, int x, int y, int moveX, int moveY) {
+        if (size == keys.length) {
+            grow(size*2);
+        }
+        int width = img.getWidth(null);
+        int height = img.getHeight(null);
+        //only characters are ordered by where they stand, everything else on a layer just groups by picture
+        int depth = 0;
+        if (layer == LAYER_ACTORS) {
+            depth = Math.max(0, Math.min(MAX_DEPTH, y + height + DEPTH_SHIFT));
+        }
+        Integer id = imageIds.get(img);
+        if (id == null) {
+            id = number(imageIds.size() & ((1 << IMAGE_BITS) - 1));
+            imageIds.put(img, id);
+        }
+
+        images[size] = img;
+        xs[size] = x;
+        ys[size] = y;
+        moveXs[size] = still ? 0 : moveX;
+        moveYs[size] = still ? 0 : moveY;
+        widths[size] = width;
+        heights[size] = height;
+        keys[size] = (layer << (DEPTH_BITS+IMAGE_BITS)) | (depth << IMAGE_BITS) | id;
+        size++;
+        sorted = false;
+    }
+
+    //orders the sprites by key with a least-significant-byte-first radix sort, which keeps
+    // sprites with the same key in the order they were added
+    public void sort() {
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        for (int shift = 0; shift < 32; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[(keys[i] >>> shift) & 0xff]++;
+            }
+            //skips the pass if every key has the same byte here (most passes, with a handful of sprites)
+            if (counts[(keys[0] >>> shift) & 0xff] == size) {
+                continue;
+            }
+            int total = 0;
+            for (int b = 0; b < 256; b++) {
+                int count = counts[b];
+                counts[b] = total;
+                total += count;
+            }
+            for (int i = 0; i < size; i++) {
+                int sprite = order[i];
+                scratch[counts[(keys[sprite] >>> shift) & 0xff]++] = sprite;
+            }
+            int[] swap = order;
+            order = scratch;
+            scratch = swap;
+        }
+        sorted = true;
+    }
+
+    //draws every sprite in order
+    public void flush(Graphics g) {
+        if (!sorted) {
+            sort();
+        }
+        imageSwitches = 0;
+        Image last = null;
+        for (int i = 0; i < size; i++) {
+            int sprite = order[i];
+            if (images[sprite] != last) {
+                imageSwitches++;
+                last = images[sprite];
+            }
+            g.drawImage(images[sprite], drawX(sprite), drawY(sprite), null);
+        }
+    }
+
+    //marks the area of every sprite in the queue
+    public void markDirty(DirtyRegion dirty) {
+        for (int i = 0; i < size; i++) {
+            dirty.mark(drawX(i), drawY(i), widths[i], heights[i]);
+        }
+    }
+
+    //where a sprite is drawn, the part of its last move not blended in yet taken off where it is
+    private int drawX(int sprite) {
+        return xs[sprite] - (int)Math.round(moveXs[sprite]*(1 - blend));
+    }
+
+    private int drawY(int sprite) {
+        return ys[sprite] - (int)Math.round(moveYs[sprite]*(1 - blend));
+    }
+
+    //the boxed number n, the same one every time
+    private Integer number(int n) {
+        if (n >= numbers.length) {
+            numbers = Arrays.copyOf(numbers, Math.max(n + 1, numbers.length*2));
+        }
+        if (numbers[n] == null) {
+            numbers[n] = n;
+        }
+        return numbers[n];
+    }
+
+    private void grow(int capacity) {
+        images = images == null ? new Image[capacity] : Arrays.copyOf(images, capacity);
+        xs = xs == null ? new int[capacity] : Arrays.copyOf(xs, capacity);
+        ys = ys == null ? new int[capacity] : Arrays.copyOf(ys, capacity);
+        moveXs = moveXs == null ? new int[capacity] : Arrays.copyOf(moveXs, capacity);
+        moveYs = moveYs == null ? new int[capacity] : Arrays.copyOf(moveYs, capacity);
+        widths = widths == null ? new int[capacity] : Arrays.copyOf(widths, capacity);
+        heights = heights == null ? new int[capacity] : Arrays.copyOf(heights, capacity);
+        keys = keys == null ? new int[capacity] : Arrays.copyOf(keys, capacity);
+        order = new int[capacity];
+        scratch = new int[capacity];
+    }
+}
@@ -18,8 +18,9 @@ import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.Scanner;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.awt.image.BufferedImage;
-import javax.imageio.ImageIO;
 
 public class Room {
 	private Random rand;							//randomizer
@@ -31,7 +32,11 @@ public class Room {
 	private BufferedImage pixelMap, back;
 	private int tileWidth, tileHeight;
 	private HashMap<Integer, Image> tilePics;
-	private ArrayList<Obstacle> collideSquares;		//squares that aren't walkable tiles
+	private ArrayList<Image> bakedTiles;			//shared tiles and doors this room is holding on to
+	private ArrayList<Obstacle> collideSquares;		//blocks of tiles that aren't walkable (see addBlocks)
+	private int blockedTiles;						//how many tiles those blocks were joined from
+	public static final boolean OBSTACLE_REPORT = Boolean.getBoolean("zelda.obstacleReport");	//prints each room's tiles and blocks
+	private CollisionGrid squareGrid, borderGrid, enemyGridD, enemyGridO;	//the obstacle lists above and below by tile (see CollisionGrid)
 
 	//Regarding enemies
 	private int amount;								//number of enemies
@@ -39,7 +44,13 @@ public class Room {
 	private ArrayList<Enemy> squadStalfos;			//stores 1st type of enemy if chosen
 	private ArrayList<Enemy> squadRope;				//stores 2nd type of enemy if chosen
 	private ArrayList<Enemy> squadWizzrobe;			//stores 3rd type of enemy if chosen
-	private Sound enemyDeath = new Sound("Resources/Sound/LOZ_Enemy_Die.wav"); 
+	private SpatialHash<Enemy> crowd = new SpatialHash<Enemy>(64);		//the enemies by where they are, filled again every tick
+	private ArrayList<Enemy> nearSword = new ArrayList<Enemy>(), nearShot = new ArrayList<Enemy>();	//the enemies the player's sword and sword shot could hit
+	private Rectangle shotPath = new Rectangle();	//where the sword shot went through when nearShot was found
+	private SpatialHash.PairAction<Enemy> separator = this::separate;
+	public static final boolean SEPARATE_ENEMIES = !"false".equals(System.getProperty("zelda.separateEnemies"));
+	public static final int SEPARATION_STEP = 2;	//how far two enemies standing on each other are pushed apart each tick
+	private static Sound enemyDeath = new Sound("Resources/Sound/LOZ_Enemy_Die.wav");		//shared by every room (only one room plays at a time)
 
 	//OverWorld-exclusive
 	private HashMap<String, String> plains;
@@ -53,21 +64,64 @@ public class Room {
 	private Item heart;								//makes a heart object
 	private int heartChance;						//50-50 chance of that heart actually spawning
 	private boolean pickedUp;						//checks if the player has picked up the heart
-	private Sound itemPickUp = new Sound("Resources/Sound/LOZ_Get_Heart.wav");
+	private static Sound itemPickUp = new Sound("Resources/Sound/LOZ_Get_Heart.wav");
 
-	private int scaleFactor;						//scales all tiles and the room itself by some factor
+	public static final int scaleFactor = 3;		//scales all tiles and the room itself by some factor
+	private int bakeScale;							//scale the background is actually baked at (1 when rendering at native resolution)
+	private String layout;							//name of the layout the room is baked from
+	private String[] doors;							//walls or doors on each side (dungeon rooms only)
+	private byte[] sourceHash;						//hash of the files the room was baked from (for the room cache)
+	private FutureTask<Void> loading = new FutureTask<Void>(() -> {bake(); initEnemies();}, null);	//bakes the room once, on whichever thread needs it first
 
 	//these are fixed tuples for enemies to spawn in within each area
     private int[][] dungeonStartSpots = {{240, 342}, {480, 288}, {98, 390}, {624, 390}, {336, 342}};
 	private int[][] overworldStartSpots = {{432, 438}, {288,534}, {96,438}, {384,294}, {672,534}};
 	
 	public Image loadImage(String name){
-		return new ImageIcon(name).getImage();
+		return SpriteAtlas.loadImage(name);
 	}
 	
+	//scales a picture to the size it is baked at; at native resolution the picture is kept as is
+	// and is drawn through the scaled-down graphics from bakeGraphics instead
+	public Image bakeImage(BufferedImage img, int width, int height){
+		if (bakeScale == 1) {
+			return img;
+		}
+		return img.getScaledInstance(width, height, Image.SCALE_SMOOTH);
+	}
+
+	//loads a tile or door scaled the same way as bakeImage; these are shared with every other room using them
+	public Image bakeTile(String name, int width, int height){
+		Image tile = bakeScale == 1 ? AssetManager.acquireTile(name, 0, 0) : AssetManager.acquireTile(name, width, height);
+		bakedTiles.add(tile);
+		return tile;
+	}
+
+	//lets go of the shared tiles and doors (for a room that is thrown away)
+	public void releaseTiles(){
+		for (Image tile : bakedTiles) {
+			AssetManager.release(tile);
+		}
+		bakedTiles.clear();
+		tilePics.clear();
+		if (wallCentres != null) {
+			wallCentres.clear();
+		}
+	}
+
+	//graphics for drawing into the background using the same coordinates as the game (768x528)
+	public Graphics2D bakeGraphics(){
+		Graphics2D buffG = back.createGraphics();
+		if (bakeScale != scaleFactor) {
+			buffG.scale((double)bakeScale/scaleFactor, (double)bakeScale/scaleFactor);
+			buffG.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		}
+		return buffG;
+	}
+
 	public BufferedImage loadBuffImage(String name){
 		try {
-    		return ImageIO.read(new File(name));
+    		return SpriteAtlas.loadBuffImage(name);
 		} 
 		catch (IOException e) {
 			System.out.println(e);
@@ -87,34 +141,33 @@ public class Room {
 	 */
 
 	//method exlusive to dungeon
+    @SuppressWarnings("try")
     public void dungeonLoadHeader(String name) {
-    	try{
-			//maps the word "Layout", and a number with it, to a text file with the same number to be used to load in the room's floor
-			for (int i = 0; i<14; i++) {
-				floors.put("Layout"+i, "Resources/Dungeon/RoomTextFiles/Room"+i+".txt");
-			}
-			floors.put("startLayout", "Resources/Dungeon/RoomTextFiles/startRoom.txt");
-
+    	try (Profiler.Phase phase = Profiler.begin("header", name)) {
     		Scanner inFile = new Scanner(new File(floors.get(name)));
     		tileWidth = Integer.parseInt(inFile.nextLine());
     		tileHeight = Integer.parseInt(inFile.nextLine());
 
 			//scales a buffered image (help from internet)
-    		Image tempBack = loadBuffImage(inFile.nextLine()).getScaledInstance(256*scaleFactor,176*scaleFactor,Image.SCALE_SMOOTH);
-			back = new BufferedImage(256*scaleFactor,176*scaleFactor,BufferedImage.TYPE_INT_RGB);
-			back.getGraphics().drawImage(tempBack, 0,0, null);
+    		BufferedImage backPic = loadBuffImage(inFile.nextLine());
+			//getScaledInstance only scales once the picture is drawn
+			try (Profiler.Phase scale = Profiler.begin("scale", name)) {
+				Image tempBack = bakeImage(backPic,256*scaleFactor,176*scaleFactor);
+				back = new BufferedImage(256*bakeScale,176*bakeScale,BufferedImage.TYPE_INT_RGB);
+				bakeGraphics().drawImage(tempBack, 0,0,256*scaleFactor,176*scaleFactor, null);
+			}
             
     		pixelMap = loadBuffImage(inFile.nextLine()); // read pixels
     		int numTile = Integer.parseInt(inFile.nextLine());
     		
     		for(int i=0; i<numTile; i++){            // The 16 is saying it's base 16
     			int col = Integer.parseInt(inFile.nextLine(), 16);
-    			tilePics.put(col, loadBuffImage(inFile.nextLine()).getScaledInstance(48,48,Image.SCALE_SMOOTH));
+    			tilePics.put(col, bakeTile(inFile.nextLine(),48,48));
     		}
 			//maps the words "Wall" and "Door", along with some number denoting direction, to the image file of similar name
 			for (int i = 0; i < 4; i++) {
-				wallCentres.put("Wall"+i, loadBuffImage("Resources/Dungeon/DoorPics/dWall"+i+".png").getScaledInstance(96,96,Image.SCALE_SMOOTH));
-				wallCentres.put("Door"+i, loadBuffImage("Resources/Dungeon/DoorPics/dDoor"+i+".png").getScaledInstance(96,96,Image.SCALE_SMOOTH));
+				wallCentres.put("Wall"+i, bakeTile("Resources/Dungeon/DoorPics/dWall"+i+".png",96,96));
+				wallCentres.put("Door"+i, bakeTile("Resources/Dungeon/DoorPics/dDoor"+i+".png",96,96));
 			}
 
     	}
@@ -124,27 +177,27 @@ public class Room {
     }
 
 	//method exclusive to overworld
+	@SuppressWarnings("try")
 	public void regionLoadHeader(String name) {
-    	try{
-			//acts similarly to "floors" above, but instead with the word "Space"
-			for (int i = 0; i<8; i++) {
-				plains.put("Space"+i, "Resources/OverWorld/OverWorldTextFiles/Plain"+i+".txt");
-			}
-
+    	try (Profiler.Phase phase = Profiler.begin("header", name)) {
     		Scanner inFile = new Scanner(new File(plains.get(name)));
     		tileWidth = Integer.parseInt(inFile.nextLine());
     		tileHeight = Integer.parseInt(inFile.nextLine());
 
-    		Image tempBack = loadBuffImage(inFile.nextLine()).getScaledInstance(256*scaleFactor,176*scaleFactor,Image.SCALE_SMOOTH);
-			back = new BufferedImage(256*scaleFactor,176*scaleFactor,BufferedImage.TYPE_INT_RGB);
-			back.getGraphics().drawImage(tempBack, 0,0, null);
+    		BufferedImage backPic = loadBuffImage(inFile.nextLine());
+			//getScaledInstance only scales once the picture is drawn
+			try (Profiler.Phase scale = Profiler.begin("scale", name)) {
+				Image tempBack = bakeImage(backPic,256*scaleFactor,176*scaleFactor);
+				back = new BufferedImage(256*bakeScale,176*bakeScale,BufferedImage.TYPE_INT_RGB);
+				bakeGraphics().drawImage(tempBack, 0,0,256*scaleFactor,176*scaleFactor, null);
+			}
             
     		pixelMap = loadBuffImage(inFile.nextLine()); // read pixels
     		int numTile = Integer.parseInt(inFile.nextLine());
     		
     		for(int i=0; i<numTile; i++){            // The 16 is saying it's base 16
     			int col = Integer.parseInt(inFile.nextLine(), 16);
-    			tilePics.put(col, loadBuffImage(inFile.nextLine()).getScaledInstance(48,48,Image.SCALE_SMOOTH));
+    			tilePics.put(col, bakeTile(inFile.nextLine(),48,48));
     		}
 
     	}
@@ -156,38 +209,62 @@ public class Room {
 	//bare-bones method taken from Mr. McKenzie
 	//for rooms within dungeons
 	//passes in the doors to be used
-    public void dungeonMakeFull(String door1, String door2, String door3, String door4){
-    	Graphics buffG = back.getGraphics();
-    	int wid = pixelMap.getWidth();
-    	int height = pixelMap.getHeight();
+	//obstacles is false when only the background is painted again (after being evicted)
+    @SuppressWarnings("try")
+    public void dungeonMakeFull(String door1, String door2, String door3, String door4, boolean obstacles){
+		try (Profiler.Phase phase = Profiler.begin("paint", cacheName())) {
+	    	Graphics buffG = bakeGraphics();
+	    	int wid = pixelMap.getWidth();
+	    	int height = pixelMap.getHeight();
+	    	boolean[][] blocked = new boolean[wid][height];
 		
-    	// Go to each pixel of the map picture, if the colour is in out
-    	// HashMap then draw the image to our background.
-    	for(int x=0; x<wid; x++){
-	    	for(int y=0; y<height; y++){
-    			int col = pixelMap.getRGB(x,y); 
-    			col = col & 0xffffff; // This gets rid of the 2 bytes for the alpha
-    			if(tilePics.containsKey(col)){
-    				Image tile = tilePics.get(col);
-    				int offset = tileHeight - tile.getHeight(null); // so objects are on the ground
-    				buffG.drawImage(tile, 32*scaleFactor+x*tileWidth, 32*scaleFactor+y*tileHeight+offset,null);
-    			}
-				//if pixel used is not blue or black (denoting walkable tiles), then it is collidable object
-				// and is added to an arraylist of blocks
-				if (col != 0x0000ff && col != 0x000000) {
-					collideSquares.add(new Obstacle(new Rectangle(32*scaleFactor+x*tileWidth+obstacleOffset,32*scaleFactor+y*tileHeight+roomOffset+obstacleOffset-5,
-																  tileWidth-2*obstacleOffset, tileHeight-2*obstacleOffset)));
-				}
+	    	// Go to each pixel of the map picture, if the colour is in out
+	    	// HashMap then draw the image to our background.
+	    	for(int x=0; x<wid; x++){
+		    	for(int y=0; y<height; y++){
+	    			int col = pixelMap.getRGB(x,y); 
+	    			col = col & 0xffffff; // This gets rid of the 2 bytes for the alpha
+	    			if(tilePics.containsKey(col)){
+	    				Image tile = tilePics.get(col);
+	    				buffG.drawImage(tile, 32*scaleFactor+x*tileWidth, 32*scaleFactor+y*tileHeight,tileWidth,tileHeight,null);
+	    			}
+					//if pixel used is not blue or black (denoting walkable tiles), then it is collidable object
+					// and is added to the blocks
+					blocked[x][y] = col != 0x0000ff && col != 0x000000;
+		    	}
 	    	}
-    	}
-		//the floor layout is 2 tileWidths right and 2 tileHeights down from the top-left point of the whole room
-		//draws the 4 doors in specific areas
-		buffG.drawImage(wallCentres.get(door1),tileWidth*7,0,null);
-		buffG.drawImage(wallCentres.get(door2),tileWidth*14,(int)(tileHeight*4.5),null);
-		buffG.drawImage(wallCentres.get(door3),tileWidth*7,tileHeight*9,null);
-		buffG.drawImage(wallCentres.get(door4),0,(int)(tileHeight*4.5),null);
+			if (obstacles) {
+				addBlocks(blocked, 32*scaleFactor, 32*scaleFactor+roomOffset-5);
+			}
+			//the floor layout is 2 tileWidths right and 2 tileHeights down from the top-left point of the whole room
+			//draws the 4 doors in specific areas
+			buffG.drawImage(wallCentres.get(door1),tileWidth*7,0,tileWidth*2,tileHeight*2,null);
+			buffG.drawImage(wallCentres.get(door2),tileWidth*14,(int)(tileHeight*4.5),tileWidth*2,tileHeight*2,null);
+			buffG.drawImage(wallCentres.get(door3),tileWidth*7,tileHeight*9,tileWidth*2,tileHeight*2,null);
+			buffG.drawImage(wallCentres.get(door4),0,(int)(tileHeight*4.5),tileWidth*2,tileHeight*2,null);
+
+			buffG.dispose();
+			back = IndexedImages.compact(back);
+		}
+	}
+
+	//joins the blocked tiles into as few blocks as possible (see TileMerger), left,top being where the tiles start;
+	// each block keeps the slack of obstacleOffset only on edges facing walkable tiles, so blocks meet with no seams
+	private void addBlocks(boolean[][] blocked, int left, int top) {
+		blockedTiles = 0;
+		for (boolean[] column : blocked) {
+			for (boolean tile : column) {
+				blockedTiles += tile ? 1 : 0;
+			}
+		}
+		for (Rectangle rect : TileMerger.blocks(blocked, left, top, tileWidth, tileHeight, obstacleOffset)) {
+			collideSquares.add(new Obstacle(rect));
+		}
+	}
 
-		setBorders(buffG, door1,door2,door3,door4);
+	//the walls of a dungeon room, which only depend on its tile size and doors (so they are not kept in the room cache)
+	public void dungeonBorders(String door1, String door2, String door3, String door4){
+		setBorders(door1,door2,door3,door4);
 
 		//below are the borders affecting the player, they keep the player from walking on the room's walls and from
 		//switching rooms when not supposed to (as in dungoen rooms, after a certain point is reached, the player switches rooms)
@@ -222,31 +299,40 @@ public class Room {
     }
 	
 	//for regions, or "rooms", in the overworld
-	public void regionMakeFull() {
-		Graphics buffG = back.getGraphics();
-    	int wid = pixelMap.getWidth();
-    	int height = pixelMap.getHeight();
+	@SuppressWarnings("try")
+	public void regionMakeFull(boolean obstacles) {
+		try (Profiler.Phase phase = Profiler.begin("paint", cacheName())) {
+			Graphics buffG = bakeGraphics();
+	    	int wid = pixelMap.getWidth();
+	    	int height = pixelMap.getHeight();
+	    	boolean[][] blocked = new boolean[wid][height];
 		
-    	// Go to each pixel of the map picture, if the colour is in out
-    	// HashMap then draw the image to our background.
-    	for(int x=0; x<wid; x++){
-	    	for(int y=0; y<height; y++){
-    			int col = pixelMap.getRGB(x,y); 
-    			col = col & 0xffffff; // This gets rid of the 2 bytes for the alpha
-    			if(tilePics.containsKey(col)){
-    				Image tile = tilePics.get(col);
-    				int offset = tileHeight - tile.getHeight(null); // so objects are on the ground
-    				buffG.drawImage(tile, x*tileWidth, y*tileHeight+offset,null);
-    			}
-				//if pixel used is not blue or black (denoting walkable tiles), then it is collidable object
-				// and is added to an arraylist of blocks
-				if (col != 0x0000ff && col != 0x000000) {
-					collideSquares.add(new Obstacle(new Rectangle(x*tileWidth+obstacleOffset,+y*tileHeight+roomOffset+obstacleOffset,
-													tileWidth-2*obstacleOffset, tileHeight-2*obstacleOffset)));
-				}
-	    	}
+	    	// Go to each pixel of the map picture, if the colour is in out
+	    	// HashMap then draw the image to our background.
+	    	for(int x=0; x<wid; x++){
+		    	for(int y=0; y<height; y++){
+	    			int col = pixelMap.getRGB(x,y); 
+	    			col = col & 0xffffff; // This gets rid of the 2 bytes for the alpha
+	    			if(tilePics.containsKey(col)){
+	    				Image tile = tilePics.get(col);
+	    				buffG.drawImage(tile, x*tileWidth, y*tileHeight,tileWidth,tileHeight,null);
+	    			}
+					//if pixel used is not blue or black (denoting walkable tiles), then it is collidable object
+					// and is added to the blocks
+					blocked[x][y] = col != 0x0000ff && col != 0x000000;
+		    	}
+			}
+			if (obstacles) {
+				addBlocks(blocked, 0, roomOffset);
+			}
+
+			buffG.dispose();
+			back = IndexedImages.compact(back);
 		}
+	}
 
+	//the edges of an overworld region
+	public void regionBorders() {
 		//enemies cannot go past the edges of the screen in the overworld like the player can, so borders are set up
 		
 		//top
@@ -259,7 +345,7 @@ public class Room {
 		enemyBordersO.add(new Obstacle(new Rectangle(0, 150, 1, GPanel.HEIGHT-150)));
 	}
 	
-	public void setBorders (Graphics g, String door1, String door2, String door3, String door4) {
+	public void setBorders (String door1, String door2, String door3, String door4) {
 		//with borders spanning only certain portions of the walls of the dungeon rooms, some gaps are left open,
 		// if said gaps are in front of actual doors, they are left there, but if there are walls being placed there,
 		// those gaps are filled with additional borders
@@ -277,7 +363,7 @@ public class Room {
 		}
 	}
 
-    public Image getBackground(){return back;}
+    public synchronized Image getBackground(){return back;}
 
 	//above code is to load in and render the rooms themselves
 	//below is the logic code for the rooms
@@ -296,15 +382,22 @@ public class Room {
 		pickedUp = false;
 
 		tilePics = new HashMap<Integer, Image>();
+		bakedTiles = new ArrayList<Image>();
 		floors = new HashMap<String, String>();
 		wallCentres = new HashMap<String, Image>();
 		collideSquares = new ArrayList<Obstacle>();
 		borders = new ArrayList<Obstacle>();
 		enemyBordersD = new ArrayList<Obstacle>();
 
-		scaleFactor = 3;
-    	dungeonLoadHeader(name);
-    	dungeonMakeFull(door1,door2,door3,door4);
+		//maps the word "Layout", and a number with it, to a text file with the same number to be used to load in the room's floor
+		for (int i = 0; i<14; i++) {
+			floors.put("Layout"+i, "Resources/Dungeon/RoomTextFiles/Room"+i+".txt");
+		}
+		floors.put("startLayout", "Resources/Dungeon/RoomTextFiles/startRoom.txt");
+
+		bakeScale = GPanel.NATIVE_RENDERING ? 1 : scaleFactor;
+		layout = name;
+		doors = new String[] {door1, door2, door3, door4};
     }
 
 	public Room(Player player, String name, int amount, String type) {
@@ -317,15 +410,209 @@ public class Room {
 		this.type = type;
 
 		tilePics = new HashMap<Integer, Image>();
+		bakedTiles = new ArrayList<Image>();
 		collideSquares = new ArrayList<Obstacle>();
 		plains = new HashMap<String, String>();
 		enemyBordersO = new ArrayList<Obstacle>();
 
-		scaleFactor = 3;
-    	regionLoadHeader(name);
-		regionMakeFull();
+		//acts similarly to "floors" above, but instead with the word "Space"
+		for (int i = 0; i<8; i++) {
+			plains.put("Space"+i, "Resources/OverWorld/OverWorldTextFiles/Plain"+i+".txt");
+		}
+
+		bakeScale = GPanel.NATIVE_RENDERING ? 1 : scaleFactor;
+		layout = name;
     }
 
+	//loads the room's layout and paints its background; rooms don't share anything they change while baking,
+	// so any number of them can be baked at the same time (see RoomLoader)
+	// a room baked before (with the same source files) is read back from the room cache instead
+	@SuppressWarnings("try")
+	public void bake() {
+		try (Profiler.Phase phase = Profiler.begin("room", cacheName())) {
+			byte[] hash = RoomCache.ENABLED ? RoomCache.hash(layoutFile(), doors, bakeScale) : null;
+			sourceHash = hash;
+			RoomCache.Entry cached = hash != null ? RoomCache.read(cacheName(), hash) : null;
+			if (cached != null) {
+				tileWidth = cached.tileWidth;
+				tileHeight = cached.tileHeight;
+				back = cached.back;
+				blockedTiles = cached.blockedTiles;
+				for (Rectangle rect : cached.obstacles) {
+					collideSquares.add(new Obstacle(rect));
+				}
+			}
+			else if (isDungeon()) {
+				dungeonLoadHeader(layout);
+				dungeonMakeFull(doors[0], doors[1], doors[2], doors[3], true);
+			}
+			else {
+				regionLoadHeader(layout);
+				regionMakeFull(true);
+			}
+
+			if (isDungeon()) {
+				dungeonBorders(doors[0], doors[1], doors[2], doors[3]);
+			}
+			else {
+				regionBorders();
+			}
+			if (hash != null && cached == null && back != null) {
+				ArrayList<Rectangle> obstacles = new ArrayList<Rectangle>();
+				for (Obstacle square : collideSquares) {
+					obstacles.add(square.getRect());
+				}
+				RoomCache.write(cacheName(), hash, tileWidth, tileHeight, back, blockedTiles, obstacles);
+			}
+			makeGrids();
+			if (OBSTACLE_REPORT) {
+				System.out.println("Obstacles in " + cacheName() + ": " + blockedTiles + " blocked tiles joined into " + collideSquares.size() + " blocks");
+			}
+		}
+	}
+
+	//indexes the blocks and borders by tile, so moving things only check the ones near them
+	private void makeGrids() {
+		squareGrid = new CollisionGrid(collideSquares, tileWidth, tileHeight);
+		borderGrid = borders != null ? new CollisionGrid(borders, tileWidth, tileHeight) : null;
+		enemyGridD = enemyBordersD != null ? new CollisionGrid(enemyBordersD, tileWidth, tileHeight) : null;
+		enemyGridO = enemyBordersO != null ? new CollisionGrid(enemyBordersO, tileWidth, tileHeight) : null;
+	}
+
+	//the text file the room's layout is read from
+	public String layoutFile() {return isDungeon() ? floors.get(layout) : plains.get(layout);}
+
+	//the name of the room's file in the room cache (rooms sharing a layout differ by their doors)
+	public String cacheName() {
+		String name = layout;
+		if (isDungeon()) {
+			name += "-" + String.join("-", doors);
+		}
+		return name + "-x" + bakeScale;
+	}
+
+	public boolean isDungeon() {return doors != null;}
+	public boolean isBaked() {return loading.isDone();}
+
+	//bakes the room and puts its enemies in, unless that was already done; if another thread is
+	// in the middle of it, this waits for that thread instead of doing it twice
+	//a room whose background was evicted gets it back here
+	public void ensureBaked() {
+		loading.run();
+		try {
+			loading.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			return;
+		}
+		synchronized (this) {
+			if (back == null) {
+				restoreBackground();
+			}
+		}
+	}
+
+	//drops the room's background (and its hold on the tiles) to save memory; everything that happens in the
+	// room (enemies, the heart, obstacles) stays, and the background is baked again the next time it's needed
+	public synchronized void evictBackground() {
+		if (isBaked()) {
+			back = null;
+			releaseTiles();
+		}
+	}
+
+	//bakes the room again from its (changed) files into a new room, without touching this one
+	public Room rebake() {
+		Room fresh = isDungeon() ? new Room(player, layout, doors[0], doors[1], doors[2], doors[3], 0, "None")
+		                         : new Room(player, layout, 0, "None");
+		fresh.bake();
+		return fresh;
+	}
+
+	//takes over the background and walls of a re-baked copy of the room, keeping everything that is
+	// in the room (enemies, the heart); returns the old background
+	public synchronized Image adopt(Room fresh) {
+		Image old = back;
+		releaseTiles();
+		back = fresh.back;
+		pixelMap = fresh.pixelMap;
+		tileWidth = fresh.tileWidth;
+		tileHeight = fresh.tileHeight;
+		tilePics = fresh.tilePics;
+		wallCentres = fresh.wallCentres;
+		bakedTiles = fresh.bakedTiles;
+		collideSquares = fresh.collideSquares;
+		blockedTiles = fresh.blockedTiles;
+		borders = fresh.borders;
+		enemyBordersD = fresh.enemyBordersD;
+		enemyBordersO = fresh.enemyBordersO;
+		squareGrid = fresh.squareGrid;
+		borderGrid = fresh.borderGrid;
+		enemyGridD = fresh.enemyGridD;
+		enemyGridO = fresh.enemyGridO;
+		sourceHash = fresh.sourceHash;
+		return old;
+	}
+
+	//whether the room is baked from the file (its layout file, or a picture named in it)
+	public boolean dependsOn(String path) {
+		String key = SpriteAtlas.key(new File(path).getPath());
+		if (SpriteAtlas.key(new File(layoutFile()).getPath()).equals(key)) {
+			return true;
+		}
+		try {
+			Scanner inFile = new Scanner(new File(layoutFile()));
+			while (inFile.hasNextLine()) {
+				if (SpriteAtlas.key(new File(inFile.nextLine().trim()).getPath()).equals(key)) {
+					inFile.close();
+					return true;
+				}
+			}
+			inFile.close();
+		}
+		catch (IOException e) {
+			System.out.println(e);
+		}
+		return false;
+	}
+
+	//memory taken up by the room's background right now
+	public synchronized long getBackgroundBytes() {return back == null ? 0 : IndexedImages.footprint(back);}
+
+	//paints just the background again, from the room cache if it's there
+	private void restoreBackground() {
+		RoomCache.Entry cached = sourceHash != null ? RoomCache.read(cacheName(), sourceHash) : null;
+		if (cached != null) {
+			back = cached.back;
+		}
+		else if (isDungeon()) {
+			dungeonLoadHeader(layout);
+			dungeonMakeFull(doors[0], doors[1], doors[2], doors[3], false);
+		}
+		else {
+			regionLoadHeader(layout);
+			regionMakeFull(false);
+		}
+	}
+
+	//puts the room's starting enemies in it
+	@SuppressWarnings("try")
+	public void initEnemies() {
+		try (Profiler.Phase phase = Profiler.begin("enemies", cacheName())) {
+			if (isDungeon()) {
+				initDungeonEnemies();
+			}
+			else {
+				initOverWorldEnemies();
+			}
+		}
+	}
+
 	public void initDungeonEnemies() {
 		for (int i = 0; i < getAmount(); i++) {
 			if (type.equals("Stalfos")) {
@@ -355,66 +642,159 @@ public class Room {
 		}
 	}
 
-	public void drawEnemies(Graphics g) {
+	//puts one more enemy of the given type in the room
+	//adds one more enemy to the room and gives it back (so its tier can be set)
+	public Enemy addEnemy(String enemyType, int x, int y) {
+		Enemy enemy = new Enemy(player, enemyType, x, y, this);
+		if (enemyType.equals("Stalfos")) {
+			squadStalfos.add(enemy);
+		}
+		if (enemyType.equals("Rope")) {
+			squadRope.add(enemy);
+		}
+		if (enemyType.equals("Wizzrobe")) {
+			squadWizzrobe.add(enemy);
+		}
+		return enemy;
+	}
+
+	public void drawEnemies(RenderQueue queue) {
 		//as long as there are enemies in the arraylist used by the room, enemies are drawn
-		for (Enemy stalfos : squadStalfos) {
-			if (squadStalfos.size() == 0) {return;} 
-			else {
-				stalfos.draw(g);
-			}
+		//(counted rather than iterated, so drawing allocates nothing)
+		for (int i = 0; i < squadStalfos.size(); i++) {
+			squadStalfos.get(i).draw(queue);
 		}
-		for (Enemy rope : squadRope) {
-			if (squadRope.size() == 0) {return;} 
-			else {
-				rope.draw(g);
-			}
+		for (int i = 0; i < squadRope.size(); i++) {
+			squadRope.get(i).draw(queue);
 		}
-		for (Enemy wizzrobe : squadWizzrobe) {
-			if (squadWizzrobe.size() == 0) {return;} 
-			else {
-				wizzrobe.draw(g);
-			}
+		for (int i = 0; i < squadWizzrobe.size(); i++) {
+			squadWizzrobe.get(i).draw(queue);
 		}
 	}
 
 	public void moveEnemies() {
 		//as long as there are enemies in the arraylist used by the room, enemies move and can damage the player if collided with
-		for (Enemy stalfos : squadStalfos) {
-			if (squadStalfos.size() == 0) {return;} 
-			else {
-				stalfos.move();
-				player.checkHitByEntity(stalfos.getRect());
-			}
+		//(counted rather than iterated, so moving allocates nothing)
+		for (int i = 0; i < squadStalfos.size(); i++) {
+			Enemy stalfos = squadStalfos.get(i);
+			stalfos.move();
+			player.checkHitByEntity(stalfos.getHitbox());
 		}
-		for (Enemy rope : squadRope) {
-			if (squadRope.size() == 0) {return;} 
-			else {
-				rope.move();
-				player.checkHitByEntity(rope.getRect());
-			}
+		for (int i = 0; i < squadRope.size(); i++) {
+			Enemy rope = squadRope.get(i);
+			rope.move();
+			player.checkHitByEntity(rope.getHitbox());
 		}
-		for (Enemy wizzrobe : squadWizzrobe) {
-			if (squadWizzrobe.size() == 0) {return;} 
-			else {
-				wizzrobe.move();
-				//wizzrobes cannot hurt the player by their collision, only their fireballs can
-				player.checkHitByShot(wizzrobe.getFireball());
-			}
+		for (int i = 0; i < squadWizzrobe.size(); i++) {
+			Enemy wizzrobe = squadWizzrobe.get(i);
+			wizzrobe.move();
+			//wizzrobes cannot hurt the player by their collision, only their fireballs can
+			player.checkHitByShot(wizzrobe.getFireball());
+		}
+		//enemies that walked into each other are pushed apart, so a crowd spreads out instead of stacking up
+		if (SEPARATE_ENEMIES) {
+			indexEnemies(false);
+			crowd.pairs(separator);
+		}
+	}
+
+	//fills the crowd with every enemy, by their bodies or by where they can be hit
+	private void indexEnemies(boolean hitboxes) {
+		crowd.clear();
+		for (int i = 0; i < squadStalfos.size(); i++) {
+			crowd.add(squadStalfos.get(i), hitboxes ? squadStalfos.get(i).getHitbox().getRect() : squadStalfos.get(i).getRect());
+		}
+		for (int i = 0; i < squadRope.size(); i++) {
+			crowd.add(squadRope.get(i), hitboxes ? squadRope.get(i).getHitbox().getRect() : squadRope.get(i).getRect());
+		}
+		for (int i = 0; i < squadWizzrobe.size(); i++) {
+			crowd.add(squadWizzrobe.get(i), hitboxes ? squadWizzrobe.get(i).getHitbox().getRect() : squadWizzrobe.get(i).getRect());
+		}
+	}
+
+	//pushes two overlapping enemies a little apart along whichever way they overlap less;
+	// an enemy isn't pushed into a wall or block (its push is taken back, unless it was already touching one)
+	private void separate(Enemy first, Enemy second) {
+		Rectangle a = first.getRect(), b = second.getRect();
+		int overlapX = Math.min(a.x+a.width, b.x+b.width) - Math.max(a.x, b.x);
+		int overlapY = Math.min(a.y+a.height, b.y+b.height) - Math.max(a.y, b.y);
+		if (overlapX <= 0 || overlapY <= 0) {
+			return;			//an earlier push already moved them apart
+		}
+		int firstX = first.getX(), firstY = first.getY(), secondX = second.getX(), secondY = second.getY();
+		boolean firstBlocked = first.isBlocked(), secondBlocked = second.isBlocked();
+		if (overlapX < overlapY) {
+			int step = Math.min(SEPARATION_STEP, (overlapX+1)/2);
+			int away = 2*a.x+a.width <= 2*b.x+b.width ? -step : step;	//the first goes the way its centre already is
+			first.setX(firstX+away);
+			second.setX(secondX-away);
+		}
+		else {
+			int step = Math.min(SEPARATION_STEP, (overlapY+1)/2);
+			int away = 2*a.y+a.height <= 2*b.y+b.height ? -step : step;
+			first.setY(firstY+away);
+			second.setY(secondY-away);
+		}
+		if (!firstBlocked && first.isBlocked()) {
+			first.setX(firstX);
+			first.setY(firstY);
+		}
+		if (!secondBlocked && second.isBlocked()) {
+			second.setX(secondX);
+			second.setY(secondY);
+		}
+	}
+
+	//the sword and sword shot tests of one enemy; they are only made for enemies near the sword or shot
+	// (see killEnemies), every other enemy counts down its iframes just like it would have after missing
+	private void hitEnemy(Enemy enemy) {
+		if (nearSword.contains(enemy)) {
+			enemy.hitByPlayer();
+		}
+		else {
+			enemy.coolDown();
+		}
+		//a shot that hit an enemy is sent away, so the enemies near it are found again where it went
+		Rectangle shot = player.getLaser().getPath();
+		if (!shot.equals(shotPath)) {
+			findNear(nearShot, shot);
+		}
+		if (nearShot.contains(enemy)) {
+			enemy.hitByShot();
+		}
+		else {
+			enemy.coolDown();
+		}
+	}
+
+	//puts the enemies overlapping an area in a list, in the order they are in the room
+	private void findNear(ArrayList<Enemy> near, Rectangle area) {
+		near.clear();
+		int count = crowd.query(area);
+		for (int k = 0; k < count; k++) {
+			near.add(crowd.get(crowd.found(k)));
+		}
+		if (near == nearShot) {
+			shotPath.setBounds(area);
 		}
 	}
 
 	public void killEnemies() {
 		//damages enemies depending on how they were hit, and if their health runs out, they are removed
 		// from their arraylist and both the player's and enemy's iframes are forcibly set to 0
+		//only the enemies near the sword and the sword shot are tested against them (see hitEnemy)
+		indexEnemies(true);
+		findNear(nearSword, player.getSwordHitbox().getRect());
+		findNear(nearShot, player.getLaser().getPath());		//the shot hits anything along its whole move (see Sweep)
 		for (int i = 0; i < squadStalfos.size(); i++) {		//used direct iterator to avoid concurrent modification exception
 			if (squadStalfos.size() == 0) {return;}
 			else {
-				squadStalfos.get(i).hitByPlayer();
-				squadStalfos.get(i).hitByShot();
+				hitEnemy(squadStalfos.get(i));
 			}
 			if (squadStalfos.get(i).getHealth() == 0) {
 				squadStalfos.get(i).setIFrames(0);
 				player.setIFrames(0);
+				squadStalfos.get(i).dispose();
 				squadStalfos.remove(squadStalfos.get(i));
 				enemyDeath.play();
 			}
@@ -422,12 +802,12 @@ public class Room {
 		for (int i = 0; i < squadRope.size(); i++) {
 			if (squadRope.size() == 0) {return;}
 			else {
-				squadRope.get(i).hitByPlayer();
-				squadRope.get(i).hitByShot(); 
+				hitEnemy(squadRope.get(i));
 			}
 			if (squadRope.get(i).getHealth() == 0) {
 				squadRope.get(i).setIFrames(0);
 				player.setIFrames(0);
+				squadRope.get(i).dispose();
 				squadRope.remove(squadRope.get(i));
 				enemyDeath.play();
 			}
@@ -435,19 +815,19 @@ public class Room {
 		for (int i = 0; i < squadWizzrobe.size(); i++) {
 			if (squadWizzrobe.size() == 0) {return;}
 			else {
-				squadWizzrobe.get(i).hitByPlayer();
-				squadWizzrobe.get(i).hitByShot();
+				hitEnemy(squadWizzrobe.get(i));
 			}
 			if (squadWizzrobe.get(i).getHealth() == 0) {
 				squadWizzrobe.get(i ).setIFrames(0);
 				player.setIFrames(0);
+				squadWizzrobe.get(i).dispose();
 				squadWizzrobe.remove(squadWizzrobe.get(i));
 				enemyDeath.play();
 			}
 		}
 	}
 
-	public void drawHeart(Graphics g) {
+	public void drawHeart(RenderQueue queue) {
 		//draws the heart if
 		// - the coin flip shows heads (if tails == 0 and heads == 1)
 		// - all the enemies in the room are cleared (or no enemies exist)
@@ -455,7 +835,7 @@ public class Room {
 		//thus theres a chance that even after clearing the room, no heart spawns
 		if (heartChance == 1 && !pickedUp && 
 			(squadStalfos.size() == 0 && squadRope.size() == 0 && squadWizzrobe.size() == 0)) {
-			heart.draw(g);
+			heart.draw(queue);
 		}
 	}
 
@@ -477,5 +857,12 @@ public class Room {
 	public ArrayList<Obstacle> getCollideSquares() {return collideSquares;}
 	public ArrayList<Obstacle> getEDBorders() {return enemyBordersD;}
 	public ArrayList<Obstacle> getEOBorders() {return enemyBordersO;}
+	public CollisionGrid getSquareGrid() {return squareGrid;}
+	public CollisionGrid getBorderGrid() {return borderGrid;}
+	public CollisionGrid getEDBorderGrid() {return enemyGridD;}
+	public CollisionGrid getEOBorderGrid() {return enemyGridO;}
 	public int getAmount() {return amount;}
+
+	//sets the coin flip for the room's heart (1 for a heart once the room is cleared, 0 for none)
+	public void setHeartChance(int newHeartChance) {heartChance = newHeartChance;}
 }
\ No newline at end of file
@@ -0,0 +1,210 @@
+/**
+ * RoomCache.java
+ * Keeps every baked room on disk (in Resources/Cache), so later launches read the finished background
+ * and obstacles back in one go instead of decoding the layout pictures and painting every tile again
+ * Each file is tagged with a hash of everything the room was baked from (its layout text file, the
+ * pictures it names, its doors, the sprite atlas and the switches that change baking), so changing any
+ * of them re-bakes just that room; a room whose files are missing isn't cached at all
+ * Files are read through a memory-mapped buffer straight into the background's pixels
+ * Turned off with -Dzelda.roomCache=false
+ * File layout (big-endian):
+ *   magic, version, hash (32 bytes), tile width, tile height, width, height,
+ *   palette size (0 for rgb pixels), alpha flag, palette colours, pixels (one byte or int each),
+ *   blocked tile count, obstacle count, then x, y, width, height of every obstacle (see TileMerger)
+ */
+
+import java.awt.Rectangle;
+import java.awt.image.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class RoomCache {
+    public static final boolean ENABLED = !"false".equals(System.getProperty("zelda.roomCache"));
+    public static final String FOLDER = "Resources/Cache";
+    public static final int MAGIC = 0x5a524331;        //"ZRC1"
+    public static final int VERSION = 3;                //bump whenever baking itself changes, so old files are re-baked
+    public static final int HASH_LENGTH = 32;
+
+    private static byte[] atlasHash;                    //hash of the sprite atlas, which the tiles come from
+
+    //what is kept of a baked room
+    public static class Entry {
+        int tileWidth, tileHeight;
+        BufferedImage back;
+        int blockedTiles;
+        ArrayList<Rectangle> obstacles;
+    }
+
+    //hash of everything a room is baked from, or null if any of its files can't be read
+    @SuppressWarnings("try")
+    public static byte[] hash(String layoutFile, String[] doors, int bakeScale) {
+        try (Profiler.Phase phase = Profiler.begin("cache hash", layoutFile)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(ByteBuffer.allocate(12).putInt(VERSION).putInt(bakeScale).putInt(bakeSwitches()).array());
+            digest.update(getAtlasHash());
+
+            //the layout file names the background, the pixel map and one picture per tile
+            List<String> lines = Files.readAllLines(Paths.get(layoutFile));
+            addFile(digest, layoutFile);
+            addFile(digest, lines.get(2).trim());
+            addFile(digest, lines.get(3).trim());
+            int numTile = Integer.parseInt(lines.get(4).trim());
+            for (int i = 0; i < numTile; i++) {
+                addFile(digest, lines.get(6 + 2*i).trim());
+            }
+            if (doors != null) {
+                for (String door : doors) {
+                    addFile(digest, "Resources/Dungeon/DoorPics/d" + door + ".png");
+                }
+            }
+            return digest.digest();
+        }
+        catch (IOException | RuntimeException | NoSuchAlgorithmException e) {
+            System.out.println("Couldn't hash " + layoutFile + ": " + e);
+            return null;
+        }
+    }
+
+    //the cached room with that name, or null if there is none or it was baked from different files
+    @SuppressWarnings("try")
+    public static Entry read(String name, byte[] hash) {
+        File file = new File(FOLDER, name + ".bin");
+        if (!file.exists()) {
+            return null;
+        }
+        try (Profiler.Phase phase = Profiler.begin("cache read", name);
+             FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+                return null;
+            }
+            byte[] stored = new byte[HASH_LENGTH];
+            data.get(stored);
+            if (!Arrays.equals(stored, hash)) {
+                return null;
+            }
+
+            Entry entry = new Entry();
+            entry.tileWidth = data.getInt();
+            entry.tileHeight = data.getInt();
+            int width = data.getInt(), height = data.getInt();
+            int paletteSize = data.getInt();
+            boolean alpha = data.getInt() != 0;
+            if (paletteSize > 0) {
+                int[] palette = new int[paletteSize];
+                data.asIntBuffer().get(palette);
+                data.position(data.position() + 4*paletteSize);
+                IndexColorModel colours = new IndexColorModel(8, paletteSize, palette, 0, alpha, -1, DataBuffer.TYPE_BYTE);
+                entry.back = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, colours);
+                data.get(((DataBufferByte)entry.back.getRaster().getDataBuffer()).getData());
+            }
+            else {
+                entry.back = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                data.asIntBuffer().get(((DataBufferInt)entry.back.getRaster().getDataBuffer()).getData());
+                data.position(data.position() + 4*width*height);
+            }
+
+            entry.blockedTiles = data.getInt();
+            int count = data.getInt();
+            entry.obstacles = new ArrayList<Rectangle>(count);
+            for (int i = 0; i < count; i++) {
+                entry.obstacles.add(new Rectangle(data.getInt(), data.getInt(), data.getInt(), data.getInt()));
+            }
+            return entry;
+        }
+        catch (IOException | RuntimeException e) {
+            //a broken or cut-off file is just baked again
+            System.out.println("Couldn't read cached room " + file + ": " + e);
+            return null;
+        }
+    }
+
+    //saves a baked room; the file is written next to the old one and then moved over it, so a
+    // half-written file is never read
+    @SuppressWarnings("try")
+    public static void write(String name, byte[] hash, int tileWidth, int tileHeight, BufferedImage back, int blockedTiles, List<Rectangle> obstacles) {
+        int width = back.getWidth(), height = back.getHeight();
+        boolean indexed = back.getType() == BufferedImage.TYPE_BYTE_INDEXED;
+        IndexColorModel colours = indexed ? (IndexColorModel)back.getColorModel() : null;
+        int paletteSize = indexed ? colours.getMapSize() : 0;
+
+        ByteBuffer data = ByteBuffer.allocate(4*2 + HASH_LENGTH + 4*6 + 4*paletteSize
+                                              + (indexed ? width*height : 4*width*height) + 4*2 + 16*obstacles.size());
+        data.putInt(MAGIC).putInt(VERSION).put(hash);
+        data.putInt(tileWidth).putInt(tileHeight).putInt(width).putInt(height);
+        data.putInt(paletteSize).putInt(indexed && colours.hasAlpha() ? 1 : 0);
+        if (indexed) {
+            int[] palette = new int[paletteSize];
+            colours.getRGBs(palette);
+            for (int colour : palette) {
+                data.putInt(colour);
+            }
+            data.put((byte[])back.getRaster().getDataElements(0, 0, width, height, null));
+        }
+        else {
+            for (int colour : back.getRGB(0, 0, width, height, null, 0, width)) {
+                data.putInt(colour);
+            }
+        }
+        data.putInt(blockedTiles).putInt(obstacles.size());
+        for (Rectangle rect : obstacles) {
+            data.putInt(rect.x).putInt(rect.y).putInt(rect.width).putInt(rect.height);
+        }
+
+        try (Profiler.Phase phase = Profiler.begin("cache write", name)) {
+            File folder = new File(FOLDER);
+            folder.mkdirs();
+            File temp = File.createTempFile(name, ".tmp", folder);
+            Files.write(temp.toPath(), data.array());
+            Files.move(temp.toPath(), new File(folder, name + ".bin").toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException | RuntimeException e) {
+            //the room still works, it just gets baked again next time
+            System.out.println("Couldn't cache room " + name + ": " + e);
+        }
+    }
+
+    //the switches that change what a baked room looks like (the scale is hashed on its own), one bit each
+    private static int bakeSwitches() {
+        return IndexedImages.ENABLED ? 1 : 0;
+    }
+
+    //a missing file fails the hash, since whatever the room is baked with instead isn't in it
+    private static void addFile(MessageDigest digest, String path) throws IOException {
+        digest.update(path.getBytes(StandardCharsets.UTF_8));
+        File file = new File(path);
+        if (!file.isFile()) {
+            throw new FileNotFoundException(path);
+        }
+        digest.update(Files.readAllBytes(file.toPath()));
+    }
+
+    private static synchronized byte[] getAtlasHash() throws IOException {
+        if (atlasHash == null) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                File[] files = new File(SpriteAtlas.FOLDER).listFiles();
+                if (files != null) {
+                    Arrays.sort(files);
+                    for (File file : files) {
+                        addFile(digest, file.getPath());
+                    }
+                }
+                atlasHash = digest.digest();
+            }
+            catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+        }
+        return atlasHash;
+    }
+}
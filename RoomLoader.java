@@ -0,0 +1,172 @@
+/**
+ * RoomLoader.java
+ * Bakes rooms in parallel, one task per room, on a fork/join pool with one thread per core
+ * The rooms themselves are still made one after the other, in the order they are listed in,
+ * so which room ends up where never depends on which task happens to finish first
+ * Only the slow part (reading the layout, loading and scaling pictures, painting the background,
+ * building obstacles and enemies) is spread over the pool
+ * Tasks are started in the order the rooms are given, so the rooms needed first should be listed first
+ * -Dzelda.loadThreads=1 bakes everything on the calling thread
+ * Rooms are only baked once the player gets near them: entering a room bakes the rooms around it ahead of
+ * time, and the backgrounds of the rooms entered longest ago are dropped once they take up more memory than
+ * the budget (-Dzelda.roomBudgetKB, 4MB by default); -Dzelda.lazyRooms=false bakes every room at startup instead
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+class RoomLoader {
+    public static final int THREADS = Math.max(1, Integer.getInteger("zelda.loadThreads", Runtime.getRuntime().availableProcessors()));
+
+    public static final boolean LAZY = !"false".equals(System.getProperty("zelda.lazyRooms"));
+    public static final long BUDGET = Long.getLong("zelda.roomBudgetKB", 4096) * 1024;
+
+    private static ForkJoinPool pool;
+
+    //rooms with a baked background and how much memory it takes, ordered from least to most recently entered
+    private static LinkedHashMap<Room, Long> resident = new LinkedHashMap<Room, Long>(32, 0.75f, true);
+    private static long residentBytes;
+    private static Set<Room> kept = Collections.newSetFromMap(new IdentityHashMap<Room, Boolean>());    //never evicted (the player's room and the ones around it)
+    private static int evictions;
+
+    public static synchronized long getResidentBytes() {return residentBytes;}
+    public static synchronized int getEvictions() {return evictions;}
+
+    //the player has gone into a room: it is baked right away, the rooms around it in the background,
+    // and then backgrounds over the budget are dropped
+    public static void entered(Room room, List<Room> neighbours) {
+        synchronized (RoomLoader.class) {
+            kept.clear();
+            kept.add(room);
+            kept.addAll(neighbours);
+        }
+        room.ensureBaked();
+        baked(room);
+        if (THREADS == 1) {
+            evict();
+            return;
+        }
+        for (Room next : neighbours) {
+            getPool().execute(() -> {
+                next.ensureBaked();
+                baked(next);
+            });
+        }
+        getPool().execute(RoomLoader::evict);
+    }
+
+    //counts a room's background towards the budget (and marks it as the most recently used)
+    public static synchronized void baked(Room room) {
+        long bytes = room.getBackgroundBytes();
+        Long before = resident.put(room, bytes);
+        residentBytes += bytes - (before == null ? 0 : before);
+    }
+
+    //drops the least recently entered backgrounds until the rest fit in the budget
+    private static synchronized void evict() {
+        if (!LAZY) {
+            return;
+        }
+        Iterator<Map.Entry<Room, Long>> it = resident.entrySet().iterator();
+        while (residentBytes > BUDGET && it.hasNext()) {
+            Map.Entry<Room, Long> entry = it.next();
+            if (kept.contains(entry.getKey())) {
+                continue;
+            }
+            entry.getKey().evictBackground();
+            residentBytes -= entry.getValue();
+            evictions++;
+            it.remove();
+        }
+    }
+
+    //the rooms right next to a room (up, right, down and left) in a grid of rooms, that exist
+    public static ArrayList<Room> neighbours(List<Room> area, int columns, Room room) {
+        ArrayList<Room> neighbours = new ArrayList<Room>();
+        int i = area.indexOf(room);
+        if (i < 0) {
+            return neighbours;
+        }
+        int col = i%columns;
+        int[] next = {i-columns, col < columns-1 ? i+1 : -1, i+columns, col > 0 ? i-1 : -1};
+        for (int j : next) {
+            if (j >= 0 && j < area.size() && area.get(j) != null) {
+                neighbours.add(area.get(j));
+            }
+        }
+        return neighbours;
+    }
+
+    public static synchronized void report() {
+        System.out.printf("Rooms: %d backgrounds resident (%.1f KB of %.1f KB budget), %d evicted%n",
+                          resident.size(), residentBytes/1024.0, BUDGET/1024.0, evictions);
+    }
+
+    //bakes every room in the list (null spots are skipped), running roomLoaded after each one
+    public static void loadAll(List<Room> rooms, Runnable roomLoaded) {
+        if (THREADS == 1) {
+            for (Room room : rooms) {
+                if (room != null) {
+                    room.ensureBaked();
+                    baked(room);
+                    roomLoaded.run();
+                }
+            }
+            return;
+        }
+
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        for (Room room : rooms) {
+            if (room != null) {
+                tasks.add(getPool().submit(() -> {
+                    room.ensureBaked();
+                    baked(room);
+                    roomLoaded.run();
+                }));
+            }
+        }
+        //waits for every room, even if one of them fails, so none is left half built behind the game's back
+        for (ForkJoinTask<?> baking : tasks) {
+            try {
+                baking.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+    }
+
+    //every room of the areas, in order, without the empty spots
+    public static List<Room> rooms(List<? extends List<Room>> areas) {
+        ArrayList<Room> rooms = new ArrayList<Room>();
+        for (List<Room> area : areas) {
+            for (Room room : area) {
+                if (room != null) {
+                    rooms.add(room);
+                }
+            }
+        }
+        return rooms;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            //daemon worker threads, so an idle pool never keeps the game from closing
+            pool = new ForkJoinPool(THREADS);
+        }
+        return pool;
+    }
+}
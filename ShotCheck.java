@@ -0,0 +1,99 @@
+/**
+ * ShotCheck.java
+ * Checks shots against walls (see Projectile.stopAt) in random rooms of two walls, with no window or game
+ * Each shot starts partly inside the wall behind it, as one fired by a player standing against a wall does,
+ * and flies away from it towards the other one
+ * A shot passes when the wall it starts in doesn't slow it down, it stops touching the wall in front of it
+ * without going into it, and it is sent out on the move after that
+ * Usage: java ShotCheck [shots]
+ */
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Random;
+
+class ShotCheck {
+    public static final int SHOTS = 20000;
+    public static final int LONG = 48, SHORT = 21;      //the size of the sword shot
+    public static final int FAST = 110;
+
+    //whether a random shot does something wrong
+    private static boolean check(Random random) {
+        int dir = random.nextInt(4);
+        boolean across = dir == 1 || dir == 3;
+        int width = across ? LONG : SHORT, height = across ? SHORT : LONG;
+        int speed = random.nextBoolean() ? 15 : 1 + random.nextInt(FAST);
+        int thickness = 1 + random.nextInt(30);
+        int overlap = 1 + random.nextInt(across ? width - 1 : height - 1);       //how far the shot starts inside the wall behind it
+        int gap = random.nextInt(150);                                          //from the front of the shot to the wall in front of it
+        int x = 300 + random.nextInt(100), y = 350 + random.nextInt(100);
+
+        //the wall behind the shot, then the one in front of it
+        Rectangle behind, front;
+        switch (dir) {
+            case 0:
+            behind = new Rectangle(x - 20, y + height - overlap, width + 40, thickness);
+            front = new Rectangle(x - 20, y - gap - thickness, width + 40, thickness);
+            break;
+            case 1:
+            behind = new Rectangle(x - thickness + overlap, y - 20, thickness, height + 40);
+            front = new Rectangle(x + width + gap, y - 20, thickness, height + 40);
+            break;
+            case 2:
+            behind = new Rectangle(x - 20, y - thickness + overlap, width + 40, thickness);
+            front = new Rectangle(x - 20, y + height + gap, width + 40, thickness);
+            break;
+            default:
+            behind = new Rectangle(x + width - overlap, y - 20, thickness, height + 40);
+            front = new Rectangle(x - gap - thickness, y - 20, thickness, height + 40);
+            break;
+        }
+        ArrayList<Obstacle> walls = new ArrayList<Obstacle>();
+        walls.add(new Obstacle(behind));
+        walls.add(new Obstacle(front));
+        CollisionGrid grid = new CollisionGrid(walls, 48, 48);
+
+        Projectile shot = new Projectile(x, y, speed, speed, new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+        shot.setDir(dir);
+        int travelled = 0;
+        while (true) {
+            int fromX = shot.getX(), fromY = shot.getY();
+            shot.move(x, y);
+            shot.stopAt(grid);
+            Rectangle rect = shot.getRect();
+            if (rect.intersects(front)) {
+                return true;
+            }
+            int moved = Math.abs(shot.getX() - fromX) + Math.abs(shot.getY() - fromY);
+            travelled += moved;
+            if (moved < speed) {
+                //only the wall in front can stop the shot, and then it is just short of it
+                if (gap - travelled > 1 || gap < travelled) {
+                    return true;
+                }
+                shot.move(x, y);
+                return !shot.getOutOfBounds();
+            }
+            if (travelled > gap) {
+                return true;
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        int shots = args.length > 0 ? Integer.parseInt(args[0]) : SHOTS;
+        Random random = new Random(1);
+        int failed = 0;
+        for (int i = 0; i < shots; i++) {
+            if (check(random)) {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            System.out.println("FAIL " + failed + " of " + shots + " shots went into a wall or were stopped by the wall they started in");
+            System.exit(1);
+        }
+        System.out.println("ok   " + shots + " shots: none slowed by the wall they started in, all stopped at the wall in front");
+    }
+}
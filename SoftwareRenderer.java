@@ -0,0 +1,191 @@
+/**
+ * SoftwareRenderer.java
+ * Draws the game screen straight into the int pixels of one BufferedImage without going
+ * through Java2D for every sprite (picked with -Dzelda.renderer=software)
+ * Each picture is turned once into its pixels plus, for every row, the runs of opaque
+ * pixels in it; drawing a sprite is then just copying those runs with System.arraycopy
+ * Its cost per frame only depends on how many pixels are drawn, not on which Java2D
+ * pipeline the JVM happens to pick
+ */
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+class SoftwareRenderer {
+    public static final boolean ENABLED = "software".equals(System.getProperty("zelda.renderer"));
+
+    private BufferedImage frame;
+    private int[] pixels;               //the frame's own pixels
+    private int width, height;
+    private BufferedImage lastIndexed;  //last palette picture drawn with drawOpaque
+    private int[] expanded;             //its pixels looked up through its palette
+
+    //pixels and opaque runs of every picture drawn so far, until it is dropped (see AssetManager); pictures
+    // are dropped on other threads, so these are only used while the renderer is locked
+    private IdentityHashMap<Image, int[]> spritePixels;
+    private IdentityHashMap<Image, int[][]> spriteRuns;
+
+    public SoftwareRenderer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt)frame.getRaster().getDataBuffer()).getData();
+        spritePixels = new IdentityHashMap<Image, int[]>();
+        spriteRuns = new IdentityHashMap<Image, int[][]>();
+        AssetManager.addReleaseListener(this::forget);
+    }
+
+    public BufferedImage getFrame() {return frame;}
+
+    //copies a picture with no see-through parts (room backgrounds, the lives bar) row by row,
+    // pictures that have to be scaled to w by h are left to Java2D
+    public void drawOpaque(BufferedImage img, int x, int y, int w, int h) {
+        if (img.getWidth() != w || img.getHeight() != h) {
+            Graphics g = frame.getGraphics();
+            g.drawImage(img, x, y, w, h, null);
+            g.dispose();
+            return;
+        }
+        int x0 = Math.max(0, x), y0 = Math.max(0, y);
+        int x1 = Math.min(width, x+w), y1 = Math.min(height, y+h);
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+
+        if (img.getType() == BufferedImage.TYPE_INT_RGB || img.getType() == BufferedImage.TYPE_INT_ARGB) {
+            int[] src = ((DataBufferInt)img.getRaster().getDataBuffer()).getData();
+            int scan = img.getRaster().getWidth();
+            for (int row = y0; row < y1; row++) {
+                System.arraycopy(src, (row-y)*scan + (x0-x), pixels, row*width+x0, x1-x0);
+            }
+        }
+        //palette pictures (room backgrounds) are looked up into int pixels once, and those are
+        // copied for as long as the same picture keeps being drawn
+        else if (img.getType() == BufferedImage.TYPE_BYTE_INDEXED) {
+            if (img != lastIndexed) {
+                expand(img);
+            }
+            for (int row = y0; row < y1; row++) {
+                System.arraycopy(expanded, (row-y)*w + (x0-x), pixels, row*width+x0, x1-x0);
+            }
+        }
+        else {
+            Graphics g = frame.getGraphics();
+            g.drawImage(img, x, y, null);
+            g.dispose();
+        }
+    }
+
+    private void expand(BufferedImage img) {
+        IndexColorModel palette = (IndexColorModel)img.getColorModel();
+        int[] colours = new int[256];
+        palette.getRGBs(colours);
+        byte[] src = ((DataBufferByte)img.getRaster().getDataBuffer()).getData();
+        int w = img.getWidth(), h = img.getHeight();
+        int scan = img.getRaster().getWidth();
+        if (expanded == null || expanded.length < w*h) {
+            expanded = new int[w*h];
+        }
+        for (int row = 0; row < h; row++) {
+            int from = row*scan;
+            int to = row*w;
+            for (int col = 0; col < w; col++) {
+                expanded[to++] = colours[src[from++] & 0xff];
+            }
+        }
+        lastIndexed = img;
+    }
+
+    //draws every sprite of a render queue, in its order
+    public void draw(RenderQueue queue) {
+        for (int i = 0; i < queue.size(); i++) {
+            drawSprite(queue.getImage(i), queue.getX(i), queue.getY(i));
+        }
+    }
+
+    //copies only the opaque runs of a sprite
+    public void drawSprite(Image img, int x, int y) {
+        int[][] runs;
+        int[] src;
+        synchronized (this) {
+            runs = spriteRuns.get(img);
+            if (runs == null) {
+                prepare(img);
+                runs = spriteRuns.get(img);
+            }
+            src = spritePixels.get(img);
+        }
+        int w = img.getWidth(null);
+
+        for (int row = 0; row < runs.length; row++) {
+            int dstY = y + row;
+            if (dstY < 0 || dstY >= height) {
+                continue;
+            }
+            int[] rowRuns = runs[row];
+            //runs are stored as start, length pairs
+            for (int r = 0; r < rowRuns.length; r += 2) {
+                int start = rowRuns[r];
+                int length = rowRuns[r+1];
+                int dstX = x + start;
+                //clips the run to the frame
+                if (dstX < 0) {
+                    start -= dstX;
+                    length += dstX;
+                    dstX = 0;
+                }
+                if (dstX + length > width) {
+                    length = width - dstX;
+                }
+                if (length > 0) {
+                    System.arraycopy(src, row*w + start, pixels, dstY*width + dstX, length);
+                }
+            }
+        }
+    }
+
+    //turns a picture into its pixels and the opaque runs of each row (mostly-opaque pixels count as opaque,
+    // since the sprites only use fully clear or fully solid pixels)
+    private void prepare(Image img) {
+        int w = img.getWidth(null), h = img.getHeight(null);
+        BufferedImage argb = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = argb.getGraphics();
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        int[] src = ((DataBufferInt)argb.getRaster().getDataBuffer()).getData();
+
+        int[][] runs = new int[h][];
+        int[] found = new int[w+1];
+        for (int row = 0; row < h; row++) {
+            int count = 0;
+            int col = 0;
+            while (col < w) {
+                while (col < w && (src[row*w+col] >>> 24) < 128) {
+                    col++;
+                }
+                int start = col;
+                while (col < w && (src[row*w+col] >>> 24) >= 128) {
+                    col++;
+                }
+                if (col > start) {
+                    found[count++] = start;
+                    found[count++] = col - start;
+                }
+            }
+            runs[row] = Arrays.copyOf(found, count);
+        }
+        spritePixels.put(img, src);
+        spriteRuns.put(img, runs);
+    }
+
+    //drops the pixels and runs of a picture nothing uses any more
+    private synchronized void forget(Image img) {
+        spritePixels.remove(img);
+        spriteRuns.remove(img);
+    }
+}
@@ -12,12 +12,18 @@ import javax.sound.sampled.Clip;
 
 //had to search up most of this - StackOverflow
 class Sound {
+    //no clips are opened while muted (headless runs, -Dzelda.mute=true), every sound just stays silent
+    public static boolean muted = Boolean.getBoolean("zelda.mute");
 
     Clip clip;
 
     //makes a sound by passing in just the file name
+    @SuppressWarnings("try")
     public Sound(String fileName) {
-        try {
+        if (muted) {
+            return;
+        }
+        try (Profiler.Phase phase = Profiler.begin("sound", fileName)) {
             File file = new File(fileName);
             AudioInputStream sound = AudioSystem.getAudioInputStream(file);
             clip = AudioSystem.getClip();
@@ -29,18 +35,21 @@ class Sound {
 
     //plays the sound
     public void play() {
+        if (clip == null) {return;}
         clip.setFramePosition(0);
         clip.start();
     }
 
     //plays the sound continuously (music)
     public void playMusic() {
+        if (clip == null) {return;}
         clip.setFramePosition(0);
         clip.loop(Clip.LOOP_CONTINUOUSLY);
     }
     
     //stops the sound
     public void stop() {
+        if (clip == null) {return;}
         clip.stop();
     }
 }
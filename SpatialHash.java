@@ -0,0 +1,154 @@
+/**
+ * SpatialHash.java
+ * Finds what is near something among things that move every tick (a room's enemies), without
+ * testing everything against everything
+ * Each thing is put in every square cell its rectangle covers, and the cells are kept in a fixed number
+ * of buckets by a hash of their position, so things anywhere (even off screen) can be put in
+ * It is meant to be cleared and filled again each tick; after the first few ticks its arrays are big
+ * enough and nothing more is allocated
+ */
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+class SpatialHash<T> {
+    public static final int BUCKETS = 1024;     //a power of 2
+
+    //something done to every two things whose rectangles overlap
+    public interface PairAction<T> {
+        void run(T first, T second);
+    }
+
+    private int cellSize;
+
+    //the things put in, in order, with their rectangles
+    private Object[] items = new Object[16];
+    private int[] itemX = new int[16], itemY = new int[16], itemWidth = new int[16], itemHeight = new int[16];
+    private int count;
+
+    //one entry per cell a thing is in; the entries of a bucket are chained from head through next
+    private int[] head = new int[BUCKETS];
+    private int[] next = new int[64], entryItem = new int[64], entryColumn = new int[64], entryRow = new int[64];
+    private int entries;
+
+    //for finding the things near something without finding one twice
+    private int[] found = new int[16];
+    private int[] seen = new int[16];           //the search each thing was last found in
+    private int search;
+
+    public SpatialHash(int cellSize) {
+        this.cellSize = Math.max(1, cellSize);
+        Arrays.fill(head, -1);
+    }
+
+    public int size() {return count;}
+    @SuppressWarnings("unchecked")
+    public T get(int index) {return (T)items[index];}
+
+    //empties it for the next tick
+    public void clear() {
+        Arrays.fill(head, -1);
+        Arrays.fill(items, 0, count, null);
+        count = 0;
+        entries = 0;
+    }
+
+    //puts a thing in with where it is now (the rectangle is copied); returns its number, which counts up from 0
+    public int add(T item, Rectangle rect) {
+        if (count == items.length) {
+            int size = count*2;
+            items = Arrays.copyOf(items, size);
+            itemX = Arrays.copyOf(itemX, size);
+            itemY = Arrays.copyOf(itemY, size);
+            itemWidth = Arrays.copyOf(itemWidth, size);
+            itemHeight = Arrays.copyOf(itemHeight, size);
+            found = new int[size];
+            seen = new int[size];
+        }
+        int index = count++;
+        items[index] = item;
+        itemX[index] = rect.x;
+        itemY[index] = rect.y;
+        itemWidth[index] = rect.width;
+        itemHeight[index] = rect.height;
+        seen[index] = 0;
+        if (rect.width <= 0 || rect.height <= 0) {
+            return index;           //overlaps nothing, so it is in no cell
+        }
+        int lastColumn = Math.floorDiv(rect.x + rect.width - 1, cellSize);
+        int lastRow = Math.floorDiv(rect.y + rect.height - 1, cellSize);
+        for (int row = Math.floorDiv(rect.y, cellSize); row <= lastRow; row++) {
+            for (int column = Math.floorDiv(rect.x, cellSize); column <= lastColumn; column++) {
+                if (entries == next.length) {
+                    int size = entries*2;
+                    next = Arrays.copyOf(next, size);
+                    entryItem = Arrays.copyOf(entryItem, size);
+                    entryColumn = Arrays.copyOf(entryColumn, size);
+                    entryRow = Arrays.copyOf(entryRow, size);
+                }
+                int bucket = bucket(column, row);
+                entryItem[entries] = index;
+                entryColumn[entries] = column;
+                entryRow[entries] = row;
+                next[entries] = head[bucket];
+                head[bucket] = entries++;
+            }
+        }
+        return index;
+    }
+
+    public int query(Rectangle area) {return query(area.x, area.y, area.width, area.height);}
+
+    //finds every thing whose rectangle overlaps an area (the same test as Rectangle.intersects) and gives back
+    // how many there are; found(0) to found(count-1) are their numbers, smallest first
+    public int query(int x, int y, int width, int height) {
+        search++;
+        int total = 0;
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+        int lastColumn = Math.floorDiv(x + width - 1, cellSize);
+        int lastRow = Math.floorDiv(y + height - 1, cellSize);
+        for (int row = Math.floorDiv(y, cellSize); row <= lastRow; row++) {
+            for (int column = Math.floorDiv(x, cellSize); column <= lastColumn; column++) {
+                for (int entry = head[bucket(column, row)]; entry != -1; entry = next[entry]) {
+                    int index = entryItem[entry];
+                    //other cells can share the bucket, so the entry has to be for this cell
+                    if (entryColumn[entry] == column && entryRow[entry] == row && seen[index] != search) {
+                        seen[index] = search;
+                        if (overlaps(index, x, y, width, height)) {
+                            found[total++] = index;
+                        }
+                    }
+                }
+            }
+        }
+        Arrays.sort(found, 0, total);
+        return total;
+    }
+
+    public int found(int k) {return found[k];}
+
+    //runs an action for every two things whose rectangles overlap, each pair once and in the order
+    // they were put in (the action mustn't query this hash)
+    public void pairs(PairAction<T> action) {
+        for (int i = 0; i < count; i++) {
+            int total = query(itemX[i], itemY[i], itemWidth[i], itemHeight[i]);
+            for (int k = 0; k < total; k++) {
+                int j = found[k];
+                if (j > i) {
+                    action.run(get(i), get(j));
+                }
+            }
+        }
+    }
+
+    private boolean overlaps(int index, int x, int y, int width, int height) {
+        return itemX[index] < x + width && x < itemX[index] + itemWidth[index] &&
+               itemY[index] < y + height && y < itemY[index] + itemHeight[index];
+    }
+
+    private static int bucket(int column, int row) {
+        return (column*73856093 ^ row*19349663) & (BUCKETS - 1);
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * SpriteAtlas.java
+ * Hands out sprites and tiles from the atlas pictures made by AtlasPacker, so starting
+ * the game decodes a few big pictures instead of about a hundred small ones
+ * Each sprite is a view into its atlas page (it shares the page's pixels)
+ * Pictures that aren't in the atlas (or every picture, if there is no atlas) are loaded
+ * from their own files just like before
+ * Paths are matched without caring about upper/lower case or slash direction, the same
+ * way they resolve on Windows, where the game was written
+ * The index remembers each picture's file as it was packed (size, time and checksum); a picture whose
+ * file has been edited since is loaded from the file instead, until AtlasPacker is run again
+ */
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Scanner;
+import java.util.zip.CRC32;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+class SpriteAtlas {
+    public static final String FOLDER = "Resources/Atlas";
+    public static final String INDEX_NAME = "atlas.txt";
+
+    //the file a sprite was packed from, as it was then
+    private static class Source {
+        long length, modified, checksum;
+        long seenLength = -1, seenModified;     //the file when it was last looked at
+        boolean packed;                         //whether it was still the file that was packed then
+    }
+
+    private static HashMap<String, BufferedImage> sprites;     //every sprite in the atlas by key
+    private static HashMap<String, Source> sources;             //where each of them came from
+    private static int filesRead;                               //picture files decoded so far (atlas pages included)
+
+    //the name a path is stored under in the atlas
+    public static String key(String path) {
+        return path.replace('\\', '/').toLowerCase();
+    }
+
+    public static synchronized int getFilesRead() {return filesRead;}
+
+    //the sprite for the path, or null if it isn't in the atlas (or its file has changed since it was packed)
+    public static synchronized BufferedImage get(String path) {
+        if (sprites == null) {
+            loadAtlas();
+        }
+        String key = key(path);
+        BufferedImage sprite = sprites.get(key);
+        if (sprite != null && !unchanged(sources.get(key), new File(path))) {
+            return null;
+        }
+        return sprite;
+    }
+
+    //the CRC-32 of a file's bytes
+    public static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(Files.readAllBytes(file.toPath()));
+        return crc.getValue();
+    }
+
+    //loads a picture for drawing (in place of new ImageIcon(path).getImage())
+    public static Image loadImage(String path) {
+        BufferedImage sprite = get(path);
+        if (sprite != null) {
+            return sprite;
+        }
+        countFile();
+        return new ImageIcon(path).getImage();
+    }
+
+    //loads a picture whose pixels are needed (in place of ImageIO.read)
+    @SuppressWarnings("try")
+    public static BufferedImage loadBuffImage(String path) throws IOException {
+        BufferedImage sprite = get(path);
+        if (sprite != null) {
+            return sprite;
+        }
+        countFile();
+        try (Profiler.Phase phase = Profiler.begin("decode", path)) {
+            return ImageIO.read(new File(path));
+        }
+    }
+
+    private static synchronized void countFile() {
+        filesRead++;
+    }
+
+    //whether a sprite's file is still the one that was packed; its size and time are looked at every time
+    // (so edits show up while the game runs), and only if those changed is it read to compare checksums
+    private static boolean unchanged(Source source, File file) {
+        if (!file.isFile()) {
+            //nothing to compare with, so the atlas is all there is
+            return true;
+        }
+        long length = file.length(), modified = file.lastModified();
+        if (length != source.seenLength || modified != source.seenModified) {
+            source.seenLength = length;
+            source.seenModified = modified;
+            try {
+                source.packed = length == source.length && (modified == source.modified || checksum(file) == source.checksum);
+            }
+            catch (IOException e) {
+                source.packed = true;
+            }
+            if (!source.packed) {
+                System.out.println(file + " has changed since the atlas was packed, so it is read from its own file (run AtlasPacker again)");
+            }
+        }
+        return source.packed;
+    }
+
+    //reads the index and every page, if the atlas has been packed
+    @SuppressWarnings("try")
+    private static void loadAtlas() {
+        sprites = new HashMap<String, BufferedImage>();
+        sources = new HashMap<String, Source>();
+        File index = new File(FOLDER, INDEX_NAME);
+        if (!index.exists()) {
+            return;
+        }
+        try (Profiler.Phase phase = Profiler.begin("atlas")) {
+            Scanner inFile = new Scanner(index);
+            BufferedImage[] pages = new BufferedImage[Integer.parseInt(inFile.nextLine().trim())];
+            for (int p = 0; p < pages.length; p++) {
+                pages[p] = ImageIO.read(new File(FOLDER, "atlas" + p + ".png"));
+                filesRead++;
+            }
+            while (inFile.hasNextLine()) {
+                String line = inFile.nextLine().trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                //name page x y width height, then the file's size, time and checksum (the name is the only part
+                // that could hold spaces)
+                String[] parts = line.split(" ");
+                int n = parts.length;
+                int fields = 0;
+                for (int i = n-8; i < n; i++) {
+                    fields += parts[i].length() + 1;
+                }
+                String name = line.substring(0, line.length() - fields);
+                BufferedImage page = pages[Integer.parseInt(parts[n-8])];
+                sprites.put(name, page.getSubimage(Integer.parseInt(parts[n-7]), Integer.parseInt(parts[n-6]),
+                                                   Integer.parseInt(parts[n-5]), Integer.parseInt(parts[n-4])));
+                Source source = new Source();
+                source.length = Long.parseLong(parts[n-3]);
+                source.modified = Long.parseLong(parts[n-2]);
+                source.checksum = Long.parseLong(parts[n-1]);
+                sources.put(name, source);
+            }
+            inFile.close();
+        }
+        catch (IOException | RuntimeException e) {
+            //a broken atlas is ignored and every picture is read from its own file instead
+            System.out.println("Couldn't read the sprite atlas: " + e);
+            sprites.clear();
+            sources.clear();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Sweep.java
+ * Swept box tests: how far through a move a moving rectangle first overlaps a still one, so something
+ * fast can't jump over something thin between two ticks (a shot moving 15 pixels a tick would
+ * otherwise pass straight through a 1 pixel border, or anything narrower than its step)
+ * Times go from 0 at the start of the move to 1 at its end
+ */
+
+import java.awt.Rectangle;
+
+class Sweep {
+    public static final double MISS = -1;       //the rectangles never overlap during the move
+
+    //when a width by height box moving from x,y by dx,dy first overlaps a rectangle (in the same sense as
+    // Rectangle.intersects, so boxes only touching edges don't count), or MISS
+    public static double time(int x, int y, int width, int height, int dx, int dy, Rectangle target) {
+        if (width <= 0 || height <= 0 || target.width <= 0 || target.height <= 0) {
+            return MISS;
+        }
+        double enter = 0, exit = 1;
+        //along each axis the box overlaps the target while its left (top) is strictly between low and high
+        for (int a = 0; a < 2; a++) {
+            double position = a == 0 ? x : y;
+            double speed = a == 0 ? dx : dy;
+            double low = a == 0 ? target.x - width : target.y - height;
+            double high = a == 0 ? target.x + target.width : target.y + target.height;
+            if (speed == 0) {
+                if (position <= low || position >= high) {
+                    return MISS;
+                }
+            }
+            else {
+                double first = (low - position)/speed, last = (high - position)/speed;
+                enter = Math.max(enter, Math.min(first, last));
+                exit = Math.min(exit, Math.max(first, last));
+            }
+        }
+        return enter < exit ? enter : MISS;
+    }
+
+    //the box covering a whole move (where a box starts, where it ends and everything in between)
+    public static Rectangle path(int x, int y, int width, int height, int dx, int dy, Rectangle into) {
+        into.setBounds(Math.min(x, x + dx), Math.min(y, y + dy), width + Math.abs(dx), height + Math.abs(dy));
+        return into;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * TileMerger.java
+ * Joins the blocked tiles of a room's pixel map into as few rectangles as it can, so a wall of twelve
+ * tiles becomes one obstacle instead of twelve with seams between them
+ * Greedy: going along each row, a run of blocked tiles is made as wide as it can be, then as tall as the
+ * rows below it allow (every tile under the run has to be blocked and not used yet)
+ * Each side of a rectangle has to face either only walkable tiles or only blocked ones, so blocks can be
+ * pulled in from walkable tiles (for some slack) and still meet flush where they touch each other
+ */
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+
+class TileMerger {
+    //the rectangles covering every blocked tile exactly once, in tiles (blocked[x][y] like the pixel map)
+    public static ArrayList<Rectangle> merge(boolean[][] blocked) {
+        ArrayList<Rectangle> merged = new ArrayList<Rectangle>();
+        int width = blocked.length;
+        int height = width == 0 ? 0 : blocked[0].length;
+        boolean[][] used = new boolean[width][height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (!blocked[x][y] || used[x][y]) {
+                    continue;
+                }
+                //the run's top and bottom each face only one kind of tile
+                int right = x + 1;
+                while (right < width && blocked[right][y] && !used[right][y] &&
+                       open(blocked, right, y-1) == open(blocked, x, y-1) && open(blocked, right, y+1) == open(blocked, x, y+1)) {
+                    right++;
+                }
+                int bottom = y + 1;
+                while (bottom < height && rowFree(blocked, used, x, right, bottom) &&
+                       open(blocked, x-1, bottom) == open(blocked, x-1, y) && open(blocked, right, bottom) == open(blocked, right, y)) {
+                    bottom++;
+                }
+                for (int i = x; i < right; i++) {
+                    for (int j = y; j < bottom; j++) {
+                        used[i][j] = true;
+                    }
+                }
+                merged.add(new Rectangle(x, y, right - x, bottom - y));
+            }
+        }
+        return merged;
+    }
+
+    //the merged blocks in pixels, left,top being where the tiles start; each side facing walkable tiles
+    // (or the edge of the map) is pulled in by inset, each side facing blocked tiles is left where it is
+    public static ArrayList<Rectangle> blocks(boolean[][] blocked, int left, int top, int tileWidth, int tileHeight, int inset) {
+        ArrayList<Rectangle> blocks = new ArrayList<Rectangle>();
+        for (Rectangle tiles : merge(blocked)) {
+            int x1 = left + tiles.x*tileWidth, y1 = top + tiles.y*tileHeight;
+            int x2 = x1 + tiles.width*tileWidth, y2 = y1 + tiles.height*tileHeight;
+            if (open(blocked, tiles.x-1, tiles.y)) {
+                x1 += inset;
+            }
+            if (open(blocked, tiles.x+tiles.width, tiles.y)) {
+                x2 -= inset;
+            }
+            if (open(blocked, tiles.x, tiles.y-1)) {
+                y1 += inset;
+            }
+            if (open(blocked, tiles.x, tiles.y+tiles.height)) {
+                y2 -= inset;
+            }
+            blocks.add(new Rectangle(x1, y1, x2 - x1, y2 - y1));
+        }
+        return blocks;
+    }
+
+    //whether the tile at x,y can be walked on (everything off the map can)
+    public static boolean open(boolean[][] blocked, int x, int y) {
+        return x < 0 || y < 0 || x >= blocked.length || y >= blocked[x].length || !blocked[x][y];
+    }
+
+    //whether the tiles from left to right (exclusive) of a row are all blocked, not used yet, and face only
+    // one kind of tile below
+    private static boolean rowFree(boolean[][] blocked, boolean[][] used, int left, int right, int y) {
+        for (int x = left; x < right; x++) {
+            if (!blocked[x][y] || used[x][y] || open(blocked, x, y+1) != open(blocked, left, y+1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}